@@ -0,0 +1,75 @@
+package hu.ponte.ImageApp.benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * A benchmarkok bemeneti képei: a src/test/resources képei, valamint generált nagy PNG és JPEG képek.
+ */
+final class BenchmarkImages {
+
+    /**
+     * A generált képek mérete (nagyjából egy 12 megapixeles fénykép).
+     */
+    static final int LARGE_WIDTH = 4000;
+    static final int LARGE_HEIGHT = 3000;
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * @param name A kép neve: a src/test/resources egy fájlja, vagy "large.png", illetve "large.jpg".
+     * @return A kép tartalma.
+     * @throws IOException Ha a kép nem olvasható vagy nem állítható elő.
+     */
+    static byte[] load(String name) throws IOException {
+        return switch (name) {
+            case "large.png" -> generate("png");
+            case "large.jpg" -> generate("jpeg");
+            default -> {
+                try (InputStream input = BenchmarkImages.class.getResourceAsStream("/" + name)) {
+                    if (input == null) {
+                        throw new IOException("Benchmark image not found: " + name);
+                    }
+                    yield input.readAllBytes();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param name A kép neve.
+     * @return A kép formátuma ("png" vagy "jpeg").
+     */
+    static String formatOf(String name) {
+        return name.endsWith(".png") ? "png" : "jpeg";
+    }
+
+    /**
+     * Színátmenetből és zajból álló képet állít elő, hogy a tömörítés a fényképekhez hasonlóan viselkedjen.
+     */
+    private static byte[] generate(String format) throws IOException {
+        BufferedImage image = new BufferedImage(LARGE_WIDTH, LARGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, LARGE_WIDTH, LARGE_HEIGHT, Color.BLUE));
+        graphics.fillRect(0, 0, LARGE_WIDTH, LARGE_HEIGHT);
+        graphics.dispose();
+        Random random = new Random(42);
+        for (int y = 0; y < LARGE_HEIGHT; y += 2) {
+            for (int x = 0; x < LARGE_WIDTH; x += 2) {
+                int rgb = image.getRGB(x, y);
+                image.setRGB(x, y, rgb ^ (random.nextInt(32) * 0x010101));
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,62 @@
+package hu.ponte.ImageApp.benchmark;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.util.AESUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A régi AESUtil (minden hívásnál fájlból betöltött kulcs, AES/ECB) és az ImageCipher
+ * (gyorsítótárazott kulcs, darabolt AES-GCM) összehasonlítása különböző képméreteken.
+ * A régi titkosítás a munkakönyvtárban (target) lévő secretKey.key kulcsot használja.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherBenchmark {
+
+    @Param({"16384", "262144", "4194304"})
+    public int size;
+
+    private byte[] plain;
+    private byte[] legacyEncrypted;
+    private byte[] encrypted;
+    private ImageCipher imageCipher;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() throws Exception {
+        plain = new byte[size];
+        new Random(42).nextBytes(plain);
+        imageCipher = new ImageCipher(AESUtil.loadSecretKey(), 65536);
+        legacyEncrypted = AESUtil.encrypt(plain);
+        encrypted = imageCipher.encrypt(plain);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public byte[] legacyEncrypt() throws Exception {
+        return AESUtil.encrypt(plain);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public byte[] legacyDecrypt() throws Exception {
+        return AESUtil.decrypt(legacyEncrypted);
+    }
+
+    @Benchmark
+    public byte[] imageCipherEncrypt() throws Exception {
+        return imageCipher.encrypt(plain);
+    }
+
+    @Benchmark
+    public byte[] imageCipherDecrypt() throws Exception {
+        return imageCipher.decrypt(encrypted);
+    }
+}
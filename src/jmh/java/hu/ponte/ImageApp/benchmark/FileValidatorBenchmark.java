@@ -0,0 +1,61 @@
+package hu.ponte.ImageApp.benchmark;
+
+import hu.ponte.ImageApp.validation.FileValidator;
+import hu.ponte.ImageApp.validation.ImageFormat;
+import hu.ponte.ImageApp.validation.ImageProbe;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A képméret-ellenőrzés költsége: a teljes kép dekódolása (ImageIO.read, a korábbi megoldás),
+ * csak a fejléc olvasása (ImageProbe), valamint a FileValidator teljes tartalomellenőrzése.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileValidatorBenchmark {
+
+    @Param({"test.jpg", "test2.jpg", "large.jpg", "large.png"})
+    public String image;
+
+    private byte[] data;
+    private MockMultipartFile file;
+    private FileValidator fileValidator;
+
+    @Setup
+    public void setUp() throws Exception {
+        data = BenchmarkImages.load(image);
+        file = new MockMultipartFile("files", image, "image/" + BenchmarkImages.formatOf(image), data);
+        // A tartalomellenőrzés nem használja az adatbázist
+        fileValidator = new FileValidator(null, null);
+        ReflectionTestUtils.setField(fileValidator, "maxWidth", 10000);
+        ReflectionTestUtils.setField(fileValidator, "maxHeight", 10000);
+        ReflectionTestUtils.setField(fileValidator, "allowedFileTypes", new String[]{"image/png", "image/jpeg"});
+    }
+
+    @Benchmark
+    public int fullDecode() throws Exception {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+        return decoded.getWidth() * decoded.getHeight();
+    }
+
+    @Benchmark
+    public Dimension headerProbe() throws Exception {
+        return ImageProbe.readDimensions(new ByteArrayInputStream(data));
+    }
+
+    @Benchmark
+    public ImageFormat validateFileContent() throws Exception {
+        return fileValidator.validateFileContent(file);
+    }
+}
@@ -0,0 +1,109 @@
+package hu.ponte.ImageApp.benchmark;
+
+import hu.ponte.ImageApp.processor.BatchDialect;
+import hu.ponte.ImageApp.processor.GraphicsMagickProcessor;
+import hu.ponte.ImageApp.processor.ImageMagickProcessor;
+import hu.ponte.ImageApp.processor.ImageProcessor;
+import hu.ponte.ImageApp.processor.JavaImageProcessor;
+import hu.ponte.ImageApp.processor.PooledImageProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Az ImageProcessor megvalósítások átméretezési ideje 200x200-as célméretre. A stream API-t
+ * használó processzorok a feltöltéssel azonos módon futnak; a folyamatkészletes változatok
+ * csak a fájl API-t támogatják. Ha egy külső eszköz nincs telepítve, a hozzá tartozó
+ * benchmarkok a beállításkor hibával leállnak, a többi benchmark ettől függetlenül lefut.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ImageProcessorBenchmark {
+
+    private static final int TARGET_SIZE = 200;
+
+    @Param({"java", "graphicsmagick", "imagemagick", "graphicsmagick-pooled", "imagemagick-pooled"})
+    public String processor;
+
+    @Param({"test.jpg", "test2.jpg", "large.jpg", "large.png"})
+    public String image;
+
+    private ImageProcessor imageProcessor;
+    private byte[] data;
+    private String format;
+    private Path inputFile;
+    private Path outputFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        data = BenchmarkImages.load(image);
+        format = BenchmarkImages.formatOf(image);
+        imageProcessor = switch (processor) {
+            case "java" -> new JavaImageProcessor(0.85f);
+            case "graphicsmagick" -> requireTool(new GraphicsMagickProcessor(), "gm", "version");
+            case "imagemagick" -> requireTool(new ImageMagickProcessor(), "magick", "-version");
+            case "graphicsmagick-pooled" -> requireTool(pooled(BatchDialect.GRAPHICSMAGICK), "gm", "version");
+            case "imagemagick-pooled" -> requireTool(pooled(BatchDialect.IMAGEMAGICK), "magick", "-version");
+            default -> throw new IllegalArgumentException("Unknown processor: " + processor);
+        };
+        String suffix = "png".equals(format) ? ".png" : ".jpg";
+        inputFile = Files.createTempFile("benchmark-input-", suffix);
+        outputFile = Files.createTempFile("benchmark-output-", suffix);
+        Files.write(inputFile, data);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (imageProcessor instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        Files.deleteIfExists(inputFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    public int resize() throws Exception {
+        if (imageProcessor instanceof PooledImageProcessor) {
+            File resized = imageProcessor.resizeImage(inputFile.toFile(), TARGET_SIZE, TARGET_SIZE, outputFile.toString());
+            return (int) resized.length();
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        imageProcessor.resizeImage(new ByteArrayInputStream(data), output, TARGET_SIZE, TARGET_SIZE, format);
+        return output.size();
+    }
+
+    private static ImageProcessor pooled(BatchDialect dialect) {
+        return new PooledImageProcessor(dialect, 1, 500, 30000, 30000);
+    }
+
+    private static ImageProcessor requireTool(ImageProcessor imageProcessor, String... versionCommand)
+            throws IOException, InterruptedException {
+        try {
+            Process process = new ProcessBuilder(versionCommand).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (process.waitFor() == 0) {
+                return imageProcessor;
+            }
+        } catch (IOException e) {
+            // Az eszköz nincs telepítve
+        }
+        if (imageProcessor instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+                // A készlet még nem indított folyamatot
+            }
+        }
+        throw new IllegalStateException(versionCommand[0] + " is not installed, skipping this benchmark");
+    }
+}
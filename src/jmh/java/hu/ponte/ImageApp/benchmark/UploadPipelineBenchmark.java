@@ -0,0 +1,83 @@
+package hu.ponte.ImageApp.benchmark;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.pipeline.PipelineStage;
+import hu.ponte.ImageApp.pipeline.UploadPipeline;
+import hu.ponte.ImageApp.processor.ImageProcessor;
+import hu.ponte.ImageApp.processor.JavaImageProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.KeyGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Egy többfájlos feltöltés átméretezési és titkosítási lépéseinek skálázódása a feltöltési
+ * folyamat szálainak számával, a JVM-en belüli processzorral (adatbázis és külső eszköz nélkül).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class UploadPipelineBenchmark {
+
+    private static final int FILES = 16;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ExecutorService executor;
+    private UploadPipeline uploadPipeline;
+    private ImageProcessor imageProcessor;
+    private ImageCipher imageCipher;
+    private byte[] data;
+    private List<Integer> indexes;
+
+    @Setup
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(threads);
+        Map<PipelineStage, Integer> concurrency = new EnumMap<>(PipelineStage.class);
+        for (PipelineStage stage : PipelineStage.values()) {
+            concurrency.put(stage, threads);
+        }
+        uploadPipeline = new UploadPipeline(executor, concurrency);
+        imageProcessor = new JavaImageProcessor(0.85f);
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        imageCipher = new ImageCipher(keyGenerator.generateKey(), 65536);
+        data = BenchmarkImages.load("test.jpg");
+        indexes = IntStream.range(0, FILES).boxed().toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Integer> uploadBatch() throws Exception {
+        return uploadPipeline.processAll(indexes, index -> {
+            byte[] resized = uploadPipeline.runStage(PipelineStage.RESIZE, () -> {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                imageProcessor.resizeImage(new ByteArrayInputStream(data), output, 200, 200, "jpeg");
+                return output.toByteArray();
+            });
+            return uploadPipeline.runStage(PipelineStage.ENCRYPT, () -> {
+                try (OutputStream output = imageCipher.encryptingStream(OutputStream.nullOutputStream())) {
+                    output.write(resized);
+                }
+                return resized.length;
+            });
+        });
+    }
+}
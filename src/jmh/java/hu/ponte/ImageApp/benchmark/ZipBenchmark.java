@@ -0,0 +1,83 @@
+package hu.ponte.ImageApp.benchmark;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.util.ContentHash;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.KeyGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A ZIP export bejegyzéseinek írása a ZipExportService mintájára, adatbázis és szálkészlet nélkül:
+ * a titkosított tartalmak visszafejtése és kiírása egy eldobott kimenetbe, tömörítéssel (DEFLATED)
+ * vagy anélkül, előre kiszámított CRC-32-vel (STORED). A képek tartalma véletlenszerű, így a
+ * tömörítés a már tömörített JPEG/PNG képekhez hasonlóan viselkedik.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipBenchmark {
+
+    @Param({"10", "100"})
+    public int images;
+
+    @Param({"65536", "1048576"})
+    public int imageSize;
+
+    @Param({"DEFLATED", "STORED"})
+    public String method;
+
+    private ImageCipher imageCipher;
+    private byte[][] encrypted;
+    private long[] crc32;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        imageCipher = new ImageCipher(keyGenerator.generateKey(), 65536);
+        Random random = new Random(42);
+        encrypted = new byte[images][];
+        crc32 = new long[images];
+        for (int i = 0; i < images; i++) {
+            byte[] plain = new byte[imageSize];
+            random.nextBytes(plain);
+            encrypted[i] = imageCipher.encrypt(plain);
+            crc32[i] = ContentHash.crc32(plain);
+        }
+    }
+
+    @Benchmark
+    public long writeZip() throws Exception {
+        long written = 0;
+        ZipOutputStream zipOut = new ZipOutputStream(OutputStream.nullOutputStream());
+        for (int i = 0; i < images; i++) {
+            byte[] data;
+            try (InputStream content = imageCipher.decryptingStream(new ByteArrayInputStream(encrypted[i]))) {
+                data = content.readAllBytes();
+            }
+            ZipEntry entry = new ZipEntry("image-" + i + ".jpg");
+            if ("STORED".equals(method)) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(data.length);
+                entry.setCompressedSize(data.length);
+                entry.setCrc(crc32[i]);
+            }
+            zipOut.putNextEntry(entry);
+            zipOut.write(data);
+            zipOut.closeEntry();
+            written += data.length;
+        }
+        zipOut.finish();
+        return written;
+    }
+}
@@ -0,0 +1,66 @@
+package hu.ponte.ImageApp.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A heap használat és a szemétgyűjtés statisztikái a mérés időtartamára. Az alkalmazás
+ * ugyanabban a JVM-ben fut, mint a terhelést generáló kliens, így a számok a kettő együttesére vonatkoznak.
+ */
+final class JvmStats {
+
+    private final Map<String, long[]> gcAtStart = new LinkedHashMap<>();
+
+    /**
+     * Elmenti a szemétgyűjtők aktuális számlálóit, és nullázza a memóriaterületek csúcsértékeit.
+     */
+    void start() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcAtStart.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return A heap aktuális és csúcshasználata, valamint a szemétgyűjtők futásainak száma és ideje a start() óta.
+     */
+    Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        summary.put("heapUsedMb", toMb(heap.getUsed()));
+        summary.put("heapCommittedMb", toMb(heap.getCommitted()));
+        summary.put("heapMaxMb", toMb(heap.getMax()));
+        // A memóriaterületek csúcsértékeinek összege: az egyidejű csúcsnál nem kisebb felső becslés
+        summary.put("heapPeakMb", toMb(peak));
+
+        Map<String, Object> collectors = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long[] start = gcAtStart.getOrDefault(gc.getName(), new long[2]);
+            Map<String, Object> collector = new LinkedHashMap<>();
+            collector.put("collections", gc.getCollectionCount() - start[0]);
+            collector.put("timeMs", gc.getCollectionTime() - start[1]);
+            collectors.put(gc.getName(), collector);
+        }
+        summary.put("gc", collectors);
+        return summary;
+    }
+
+    private static long toMb(long bytes) {
+        return bytes < 0 ? bytes : bytes / (1024 * 1024);
+    }
+}
@@ -0,0 +1,65 @@
+package hu.ponte.ImageApp.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Egy művelettípus kéréseinek késleltetéseit és hibáit gyűjti. A késleltetéseket
+ * teljes egészében megtartja, így a percentilisek pontosak (nem becsültek).
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    synchronized void record(long latencyNanos, boolean success) {
+        if (!success) {
+            errors++;
+        }
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+    }
+
+    synchronized void reset() {
+        count = 0;
+        errors = 0;
+    }
+
+    /**
+     * @param elapsedNanos A mérés időtartama az átviteli sebesség számításához.
+     * @return A kérések száma, a hibák száma, az átviteli sebesség és a késleltetés percentilisei ezredmásodpercben.
+     */
+    synchronized Map<String, Object> summary(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", round(count / (elapsedNanos / 1e9)));
+        summary.put("p50Ms", percentile(sorted, 50));
+        summary.put("p95Ms", percentile(sorted, 95));
+        summary.put("p99Ms", percentile(sorted, 99));
+        summary.put("maxMs", sorted.length == 0 ? 0.0 : millis(sorted[sorted.length - 1]));
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return millis(sorted[Math.max(0, rank - 1)]);
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,317 @@
+package hu.ponte.ImageApp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hu.ponte.ImageApp.ImageApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Végponttól végpontig tartó terheléses teszt. Elindítja az alkalmazást (alapértelmezetten
+ * beágyazott H2 adatbázissal és a JVM-en belüli képfeldolgozóval, így hálózat és külső eszköz
+ * nélkül is fut), majd feltöltésekből, letöltésekből és ZIP exportokból álló, súlyozott
+ * forgalmat generál rögzített párhuzamossággal vagy rögzített kérésszámmal, végül kiírja
+ * műveletenként az átviteli sebességet, a késleltetés percentiliseit és a JVM statisztikáit.
+ * <p>
+ * A beállítások rendszertulajdonságként adhatók meg (a "loadtest" Maven profil továbbítja őket):
+ * <ul>
+ *     <li>loadtest.database: "h2" (alapértelmezett) vagy "configured" (az application.properties adatbázisa)</li>
+ *     <li>loadtest.virtual-threads: true esetén a kéréseket és a feltöltési folyamatot virtuális szálak futtatják (Java 21+)</li>
+ *     <li>loadtest.mode: "concurrency" (zárt modell) vagy "rate" (nyílt modell, rögzített kérés/másodperc)</li>
+ *     <li>loadtest.concurrency: a párhuzamos kliensek száma "concurrency" módban</li>
+ *     <li>loadtest.rate: a kérések száma másodpercenként "rate" módban</li>
+ *     <li>loadtest.max-in-flight: a "rate" módban egyszerre futó kérések felső korlátja</li>
+ *     <li>loadtest.warmup-seconds, loadtest.duration-seconds: a bemelegítés és a mérés hossza</li>
+ *     <li>loadtest.mix: a műveletek súlya, pl. "upload=20,download=75,zip=5"</li>
+ *     <li>loadtest.seed-images: a mérés előtt feltöltött képek száma</li>
+ *     <li>loadtest.image: a feltöltött kép a tesztek erőforrásai közül</li>
+ *     <li>loadtest.result: az eredmények JSON fájlja</li>
+ * </ul>
+ * "rate" módban a késleltetést a kérés tervezett indulási idejétől mérjük, így a túlterhelt
+ * szerver miatt késve induló kérések várakozása is beleszámít (coordinated omission).
+ */
+public final class LoadTestRunner {
+
+    private enum Operation {
+        UPLOAD, DOWNLOAD, ZIP
+    }
+
+    private static final String BOUNDARY = "loadtest-boundary";
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+    private final List<String> fileNames = new CopyOnWriteArrayList<>();
+    private final AtomicLong uploadCounter = new AtomicLong();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final Operation[] mix;
+    private final byte[] image;
+    private String baseUrl;
+
+    private LoadTestRunner(Operation[] mix, byte[] image) {
+        this.mix = mix;
+        this.image = image;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = System.getProperty("loadtest.mode", "concurrency");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+        int rate = Integer.getInteger("loadtest.rate", 50);
+        int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 256);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+        int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+        int seedImages = Integer.getInteger("loadtest.seed-images", 20);
+        String mixSpec = System.getProperty("loadtest.mix", "upload=20,download=75,zip=5");
+        Path resultFile = Path.of(System.getProperty("loadtest.result", "loadtest-result.json"));
+
+        LoadTestRunner runner = new LoadTestRunner(parseMix(mixSpec), loadImage(System.getProperty("loadtest.image", "test.jpg")));
+        try (ConfigurableApplicationContext context = startApplication(System.getProperty("loadtest.database", "h2"))) {
+            runner.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            runner.seed(seedImages);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("mode", mode);
+            result.put("concurrency", "rate".equals(mode) ? maxInFlight : concurrency);
+            if ("rate".equals(mode)) {
+                result.put("targetRatePerSecond", rate);
+            }
+            result.put("mix", mixSpec);
+            result.put("virtualThreads", Boolean.getBoolean("loadtest.virtual-threads"));
+            result.put("durationSeconds", durationSeconds);
+
+            runner.run(mode, concurrency, rate, maxInFlight, warmupSeconds);
+            runner.recorders.values().forEach(LatencyRecorder::reset);
+            JvmStats jvmStats = new JvmStats();
+            jvmStats.start();
+            long start = System.nanoTime();
+            runner.run(mode, concurrency, rate, maxInFlight, durationSeconds);
+            long elapsed = System.nanoTime() - start;
+
+            Map<String, Object> operations = new LinkedHashMap<>();
+            runner.recorders.forEach((operation, recorder) ->
+                    operations.put(operation.name().toLowerCase(), recorder.summary(elapsed)));
+            result.put("operations", operations);
+            result.put("jvm", jvmStats.summary());
+
+            String json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(result);
+            Files.writeString(resultFile, json);
+            System.out.println(json);
+            System.out.println("Load test result saved to " + resultFile.toAbsolutePath());
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(String database) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("image.processor", "java");
+        properties.put("storage.blob.directory", "loadtest-blobs");
+        properties.put("spring.threads.virtual.enabled", Boolean.getBoolean("loadtest.virtual-threads"));
+        if ("h2".equals(database)) {
+            properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+            properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        } else if (!"configured".equals(database)) {
+            throw new IllegalArgumentException("Unknown loadtest.database: " + database);
+        }
+        // Parancssori argumentumként adjuk át, hogy az application.properties értékeit felülírják
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(ImageApplication.class).run(args);
+    }
+
+    private void seed(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            if (!upload()) {
+                throw new IllegalStateException("Seeding the application with images failed");
+            }
+        }
+    }
+
+    private void run(String mode, int concurrency, int rate, int maxInFlight, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        if ("rate".equals(mode)) {
+            runAtFixedRate(rate, maxInFlight, deadline);
+        } else if ("concurrency".equals(mode)) {
+            runAtFixedConcurrency(concurrency, deadline);
+        } else {
+            throw new IllegalArgumentException("Unknown loadtest.mode: " + mode);
+        }
+    }
+
+    /**
+     * Zárt modell: minden kliens az előző válasz megérkezése után azonnal indítja a következő kérést.
+     */
+    private void runAtFixedConcurrency(int concurrency, long deadline) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(nextOperation(), System.nanoTime());
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Nyílt modell: a kérések a válaszoktól függetlenül, rögzített ütemben indulnak.
+     */
+    private void runAtFixedRate(int rate, int maxInFlight, long deadline) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(maxInFlight);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long next = System.nanoTime();
+        while (next < deadline) {
+            long intendedStart = next;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation();
+            clients.execute(() -> execute(operation, intendedStart));
+            next += interval;
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    private Operation nextOperation() {
+        return mix[ThreadLocalRandom.current().nextInt(mix.length)];
+    }
+
+    private void execute(Operation operation, long start) {
+        boolean success;
+        try {
+            success = switch (operation) {
+                case UPLOAD -> upload();
+                case DOWNLOAD -> download();
+                case ZIP -> zip();
+            };
+        } catch (Exception e) {
+            success = false;
+        }
+        recorders.get(operation).record(System.nanoTime() - start, success);
+    }
+
+    private boolean upload() throws Exception {
+        String fileName = "load-" + runId + "-" + uploadCounter.incrementAndGet() + ".jpg";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/files"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipartBody(fileName, uniqueContent())))
+                .build();
+        boolean success = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        if (success) {
+            fileNames.add(fileName);
+        }
+        return success;
+    }
+
+    private boolean download() throws Exception {
+        String fileName = fileNames.get(ThreadLocalRandom.current().nextInt(fileNames.size()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/files/" + fileName)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    private boolean zip() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/files/zip")).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    /**
+     * A kép egy egyedi JPEG megjegyzéssel (COM szegmens) kiegészített változata, hogy a feltöltések
+     * tartalma eltérjen, és a szerver ne hagyhassa ki az átméretezést a már ismert tartalmak miatt.
+     */
+    private byte[] uniqueContent() {
+        byte[] comment = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[image.length + comment.length + 4];
+        content[0] = image[0];
+        content[1] = image[1];
+        content[2] = (byte) 0xFF;
+        content[3] = (byte) 0xFE;
+        content[4] = 0;
+        content[5] = (byte) (comment.length + 2);
+        System.arraycopy(comment, 0, content, 6, comment.length);
+        System.arraycopy(image, 2, content, 6 + comment.length, image.length - 2);
+        return content;
+    }
+
+    private static byte[] multipartBody(String fileName, byte[] content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 512);
+        for (String[] field : new String[][]{{"width", "200"}, {"height", "200"}}) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + field[0] + "\"\r\n\r\n"
+                    + field[1] + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"files\"; filename=\"" + fileName
+                + "\"\r\nContent-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static byte[] loadImage(String name) throws IOException {
+        try (InputStream input = LoadTestRunner.class.getResourceAsStream("/" + name)) {
+            if (input == null) {
+                throw new IOException("Load test image not found: " + name);
+            }
+            byte[] image = input.readAllBytes();
+            if ((image[0] & 0xFF) != 0xFF || (image[1] & 0xFF) != 0xD8) {
+                throw new IOException("The load test image must be a JPEG: " + name);
+            }
+            return image;
+        }
+    }
+
+    /**
+     * A súlyok alapján feltölt egy tömböt a műveletekkel, amelyből egyenletesen választunk.
+     */
+    private static Operation[] parseMix(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.trim().split("=");
+            weights.put(Operation.valueOf(keyValue[0].trim().toUpperCase()), Integer.parseInt(keyValue[1].trim()));
+        }
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("loadtest.mix must contain a positive weight: " + spec);
+        }
+        Operation[] mix = new Operation[total];
+        int index = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            for (int i = 0; i < weight.getValue(); i++) {
+                mix[index++] = weight.getKey();
+            }
+        }
+        return mix;
+    }
+}
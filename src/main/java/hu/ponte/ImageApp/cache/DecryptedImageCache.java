@@ -0,0 +1,124 @@
+package hu.ponte.ImageApp.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A visszafejtett képek memóriabeli, LRU elvű gyorsítótára. A méretkorlát a tárolt bájtok
+ * összegére vonatkozik, nem az elemek számára; a korlát túllépésekor a legrégebben használt
+ * képek kerülnek ki. A túl nagy képek (image.cache.max-entry-bytes felett) nem kerülnek be,
+ * hogy egy-egy nagy kép ne szorítsa ki a sok kicsi, gyakran kért képet.
+ */
+@Component
+public class DecryptedImageCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes      A gyorsítótárban tárolható bájtok maximális összege; 0 esetén a gyorsítótár ki van kapcsolva.
+     * @param maxEntryBytes Az ennél nagyobb képek nem kerülnek a gyorsítótárba.
+     */
+    public DecryptedImageCache(@Value("${image.cache.max-bytes:67108864}") long maxBytes,
+                               @Value("${image.cache.max-entry-bytes:4194304}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    /**
+     * @param fileName A kép fájlneve.
+     * @return A gyorsítótárban lévő kép, vagy null.
+     */
+    public CachedImage get(String fileName) {
+        CachedImage image;
+        synchronized (entries) {
+            image = entries.get(fileName);
+        }
+        (image != null ? hits : misses).increment();
+        return image;
+    }
+
+    /**
+     * @param size A kép mérete bájtban.
+     * @return true, ha ekkora kép a gyorsítótárba kerülhet.
+     */
+    public boolean accepts(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    /**
+     * A gyorsítótárba teszi a képet, szükség esetén kiszorítva a legrégebben használt képeket.
+     *
+     * @param fileName A kép fájlneve.
+     * @param image    A kép.
+     */
+    public void put(String fileName, CachedImage image) {
+        long size = image.data().length;
+        if (!accepts(size)) {
+            return;
+        }
+        synchronized (entries) {
+            CachedImage previous = entries.put(fileName, image);
+            currentBytes += size - (previous != null ? previous.data().length : 0);
+            Iterator<Map.Entry<String, CachedImage>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, CachedImage> eldest = iterator.next();
+                currentBytes -= eldest.getValue().data().length;
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Eltávolítja a képet a gyorsítótárból (felülírás vagy törlés esetén).
+     *
+     * @param fileName A kép fájlneve.
+     */
+    public void invalidate(String fileName) {
+        synchronized (entries) {
+            CachedImage removed = entries.remove(fileName);
+            if (removed != null) {
+                currentBytes -= removed.data().length;
+            }
+        }
+    }
+
+    /**
+     * @return A gyorsítótár aktuális statisztikái.
+     */
+    public CacheStats stats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), currentBytes);
+        }
+    }
+
+    /**
+     * Egy gyorsítótárazott, visszafejtett kép.
+     *
+     * @param contentType A kép MIME típusa.
+     * @param contentHash A kép tartalmának hash-e.
+     * @param uploadedAt  A feltöltés időpontja.
+     * @param data        A kép tartalma.
+     */
+    public record CachedImage(String contentType, String contentHash, Instant uploadedAt, byte[] data) {
+    }
+
+    /**
+     * A gyorsítótár statisztikái.
+     */
+    public record CacheStats(long hits, long misses, long evictions, int entries, long bytes) {
+    }
+}
@@ -0,0 +1,29 @@
+package hu.ponte.ImageApp.config;
+
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.storage.LocalDirectoryBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A titkosított képtartalmakat tároló BlobStore konfigurációja.
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    /**
+     * @param directory     A tároló könyvtára.
+     * @param mmapThreshold Az ennél nagyobb (bájt) tartalmak memóriába leképezve kerülnek olvasásra.
+     * @return A helyi könyvtárban tároló BlobStore.
+     * @throws IOException Ha a könyvtár nem hozható létre.
+     */
+    @Bean
+    public BlobStore blobStore(@Value("${storage.blob.directory:blobs}") String directory,
+                               @Value("${storage.blob.mmap-threshold:1048576}") long mmapThreshold) throws IOException {
+        return new LocalDirectoryBlobStore(Paths.get(directory), mmapThreshold);
+    }
+}
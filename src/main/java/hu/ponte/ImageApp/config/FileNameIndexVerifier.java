@@ -0,0 +1,67 @@
+package hu.ponte.ImageApp.config;
+
+import hu.ponte.ImageApp.entity.ImageEntity;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Induláskor ellenőrzi, hogy az images.file_name oszlopon létezik-e egyedi index. A sémafrissítés
+ * (RECREATE_QUIETLY) csendben kihagyja az index létrehozását, ha a táblában ismétlődő fájlnevek
+ * vannak; ilyenkor a párhuzamos feltöltések ugyanazt a nevet is elmenthetnék, ezért az alkalmazás
+ * nem indul el, amíg az ismétlődéseket meg nem szüntetik és az index létre nem jön.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class FileNameIndexVerifier implements InitializingBean {
+
+    private static final String TABLE = "images";
+    private static final String COLUMN = "file_name";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FileNameIndexVerifier(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Boolean present = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                hasUniqueFileNameIndex(connection.getMetaData()));
+        if (!Boolean.TRUE.equals(present)) {
+            throw new IllegalStateException("Unique index " + ImageEntity.FILE_NAME_CONSTRAINT + " on "
+                    + TABLE + "." + COLUMN + " is missing, most likely because the table contains duplicate file names."
+                    + " Remove the duplicates and restart so the schema update can create it.");
+        }
+    }
+
+    /**
+     * Az egyedi indexek között olyat keres, amely pontosan a file_name oszlopot fedi le
+     * (a neve adatbázisonként eltérhet, pl. a H2 a megszorítás nevéhez utótagot fűz).
+     */
+    private static boolean hasUniqueFileNameIndex(DatabaseMetaData metaData) throws SQLException {
+        String table = metaData.storesUpperCaseIdentifiers() ? TABLE.toUpperCase(Locale.ROOT) : TABLE;
+        Map<String, Set<String>> columnsByIndex = new HashMap<>();
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, table, true, false)) {
+            while (indexes.next()) {
+                String indexName = indexes.getString("INDEX_NAME");
+                String column = indexes.getString("COLUMN_NAME");
+                if (indexName != null && column != null) {
+                    columnsByIndex.computeIfAbsent(indexName, name -> new HashSet<>()).add(column.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return columnsByIndex.values().stream().anyMatch(columns -> columns.equals(Set.of(COLUMN)));
+    }
+}
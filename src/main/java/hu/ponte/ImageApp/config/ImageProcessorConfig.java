@@ -1,12 +1,28 @@
 package hu.ponte.ImageApp.config;
 
+import hu.ponte.ImageApp.processor.BatchDialect;
+import hu.ponte.ImageApp.processor.EncodingOptions;
 import hu.ponte.ImageApp.processor.ImageMagickProcessor;
 import hu.ponte.ImageApp.processor.GraphicsMagickProcessor;
 import hu.ponte.ImageApp.processor.ImageProcessor;
+import hu.ponte.ImageApp.processor.JavaImageProcessor;
+import hu.ponte.ImageApp.processor.MeteredImageProcessor;
+import hu.ponte.ImageApp.processor.PooledImageProcessor;
+import hu.ponte.ImageApp.processor.ProcessExecutor;
+import hu.ponte.ImageApp.processor.ProcessLimits;
+import hu.ponte.ImageApp.processor.RoutingImageProcessor;
+import hu.ponte.ImageApp.processor.ToolAvailability;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Konfigurációs osztály, amely az alkalmazásban használt képkezelő processzort állítja be.
  * A processzor típusa a konfigurációs fájlban megadott érték alapján választódik ki.
@@ -14,19 +30,185 @@ import org.springframework.beans.factory.annotation.Value;
 @Configuration
 public class ImageProcessorConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessorConfig.class);
+
+    @Value("${image.processor.java.jpeg-quality:0.85}")
+    private float javaJpegQuality;
+
+    @Value("${image.processor.pool.enabled:false}")
+    private boolean poolEnabled;
+
+    @Value("${image.processor.pool.size:4}")
+    private int poolSize;
+
+    @Value("${image.processor.pool.max-jobs-per-worker:500}")
+    private int maxJobsPerWorker;
+
+    @Value("${image.processor.pool.job-timeout-ms:30000}")
+    private long jobTimeoutMillis;
+
+    @Value("${image.processor.pool.health-check-interval-ms:30000}")
+    private long healthCheckIntervalMillis;
+
+    @Value("${image.processor.exec.queue-timeout-ms:10000}")
+    private long execQueueTimeoutMillis;
+
+    @Value("${image.processor.exec.retry-after-seconds:5}")
+    private long execRetryAfterSeconds;
+
+    @Value("${image.processor.exec.memory-limit:}")
+    private String execMemoryLimit;
+
+    @Value("${image.processor.exec.thread-limit:}")
+    private Integer execThreadLimit;
+
+    @Value("${image.processor.routing.calibrate:true}")
+    private boolean routingCalibrate;
+
+    @Value("${image.processor.routing.large-threshold-bytes:1048576}")
+    private long routingLargeThresholdBytes;
+
+    @Value("${image.processor.routing.failure-cooldown-ms:60000}")
+    private long routingFailureCooldownMillis;
+
+    @Value("${image.processor.routing.exploration-interval:50}")
+    private int routingExplorationInterval;
+
     /**
      * Visszaadja a megfelelő ImageProcessor implementációt.
      * A processzor típusa a konfigurációs fájl "image.processor" kulcsának értéke alapján kerül kiválasztásra.
+     * Ha az "image.processor.pool.enabled" értéke true, a kiválasztott eszközt hosszan futó
+     * folyamatok készletén keresztül használjuk. A "java" típus külső eszköz nélkül, a JVM-en belül méretez át.
+     * Az "auto" típus induláskor megnézi, mely külső eszközök érhetők el, és a {@link RoutingImageProcessor}
+     * segítségével formátumonként és méretosztályonként a mérten leggyorsabbat használja.
+     * A processzorok futásait a {@link MeteredImageProcessor} méri. A képenként indított gm/magick
+     * folyamatokat a közös {@link ProcessExecutor} futtatja.
+     *
+     * @param processorType    A használandó processzor típusa, ami lehet "imagemagick", "graphicsmagick", "java" vagy "auto".
+     * @param meterRegistry    A mérőszámok regisztere.
+     * @param processExecutor  A külső folyamatok közös futtatója.
+     * @return A megfelelő ImageProcessor implementáció (ImageMagickProcessor, GraphicsMagickProcessor,
+     * PooledImageProcessor, JavaImageProcessor vagy RoutingImageProcessor) mérést végző burkolóval.
+     * @throws IllegalArgumentException Ha a megadott típus ismeretlen.
+     * @throws InterruptedException Ha az "auto" típus kalibrációja megszakad.
+     */
+    @Bean
+    public ImageProcessor imageProcessor(@Value("${image.processor}") String processorType, MeterRegistry meterRegistry,
+                                         ProcessExecutor processExecutor) throws InterruptedException {
+        switch (processorType.toLowerCase(Locale.ROOT)) {
+            case "java":
+                return java(meterRegistry);
+            case "graphicsmagick":
+                return graphicsMagick(meterRegistry, processExecutor);
+            case "imagemagick":
+                return imageMagick(meterRegistry, processExecutor);
+            case "auto":
+                return routing(meterRegistry, processExecutor);
+            default:
+                throw new IllegalArgumentException("Unknown image.processor value: " + processorType
+                        + " (expected java, graphicsmagick, imagemagick or auto)");
+        }
+    }
+
+    /**
+     * A külső képfeldolgozó folyamatok közös futtatója. A párhuzamosan futó folyamatok számát egy
+     * szemafor, a szabad helyre várakozókét egy korlátos sor határolja; ha mindkettő megtelt, a
+     * kérés 503-as válasszal (Retry-After fejléccel) utasítható vissza.
      *
-     * @param processorType A használandó processzor típusa, ami lehet "imagemagick" vagy "graphicsmagick".
-     * @return A megfelelő ImageProcessor implementáció (ImageMagickProcessor vagy GraphicsMagickProcessor).
+     * @param maxConcurrent      Az egyszerre futó folyamatok legnagyobb száma (0 = a processzormagok száma).
+     * @param queueCapacity      A szabad helyre egyszerre várakozó kérések legnagyobb száma.
+     * @param queueTimeoutMillis Legfeljebb ennyi ideig vár egy kérés szabad helyre.
+     * @param timeoutMillis      Egy folyamat legnagyobb futásideje; utána a folyamatot a leszármazottaival együtt leállítjuk.
+     * @param retryAfterSeconds  Telítettség esetén a Retry-After fejléc értéke.
+     * @param meterRegistry      A mérőszámok regisztere.
+     * @return A folyamatfuttató.
+     */
+    @Bean(destroyMethod = "close")
+    public ProcessExecutor processExecutor(@Value("${image.processor.exec.max-concurrent:0}") int maxConcurrent,
+                                           @Value("${image.processor.exec.queue-capacity:32}") int queueCapacity,
+                                           @Value("${image.processor.exec.queue-timeout-ms:10000}") long queueTimeoutMillis,
+                                           @Value("${image.processor.exec.timeout-ms:30000}") long timeoutMillis,
+                                           @Value("${image.processor.exec.retry-after-seconds:5}") long retryAfterSeconds,
+                                           MeterRegistry meterRegistry) {
+        int concurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        return new ProcessExecutor(concurrent, queueCapacity, queueTimeoutMillis, timeoutMillis, retryAfterSeconds,
+                meterRegistry);
+    }
+
+    /**
+     * Az átméretezett képek alapértelmezett kódolása az "image.encoding.*" kulcsok alapján.
+     * A feltöltési kérések ezt paraméterenként felülírhatják.
+     *
+     * @param quality             A JPEG/WebP minőség (1-100); üres érték esetén az eszköz alapértelmezése.
+     * @param stripMetadata       A metaadatok eltávolítása.
+     * @param progressive         Progresszív JPEG kimenet.
+     * @param pngCompressionLevel A PNG tömörítési szint (0-9); üres érték esetén az eszköz alapértelmezése.
+     * @param format              A kimenet formátuma (pl. "webp"); üres érték esetén a bemenet formátuma.
+     * @param imageProcessor      A képfeldolgozó, amelynek a formátumot támogatnia kell.
+     * @return Az alapértelmezett kódolási beállítások.
+     * @throws IllegalStateException Ha a beállított formátumot a képfeldolgozó nem tudja előállítani.
      */
     @Bean
-    public ImageProcessor imageProcessor(@Value("${image.processor}") String processorType) {
-        if ("graphicsmagick".equalsIgnoreCase(processorType)) {
-            return new GraphicsMagickProcessor();
-        } else {
-            return new ImageMagickProcessor();
+    public EncodingOptions defaultEncodingOptions(@Value("${image.encoding.quality:}") Integer quality,
+                                                  @Value("${image.encoding.strip-metadata:false}") boolean stripMetadata,
+                                                  @Value("${image.encoding.progressive:false}") boolean progressive,
+                                                  @Value("${image.encoding.png-compression-level:}") Integer pngCompressionLevel,
+                                                  @Value("${image.encoding.format:}") String format,
+                                                  ImageProcessor imageProcessor) {
+        EncodingOptions options = new EncodingOptions(quality, stripMetadata, progressive, pngCompressionLevel, format);
+        if (options.format() != null && !imageProcessor.supportsOutputFormat(options.format())) {
+            throw new IllegalStateException("The configured image processor cannot write " + options.format()
+                    + " images (image.encoding.format)");
         }
+        return options;
+    }
+
+    private ImageProcessor java(MeterRegistry meterRegistry) {
+        return new MeteredImageProcessor(new JavaImageProcessor(javaJpegQuality), "java", meterRegistry);
+    }
+
+    private ImageProcessor graphicsMagick(MeterRegistry meterRegistry, ProcessExecutor processExecutor) {
+        ImageProcessor processor = poolEnabled ? pooled(BatchDialect.GRAPHICSMAGICK)
+                : new GraphicsMagickProcessor(processExecutor, processLimits());
+        return new MeteredImageProcessor(processor, "graphicsmagick", meterRegistry);
+    }
+
+    private ImageProcessor imageMagick(MeterRegistry meterRegistry, ProcessExecutor processExecutor) {
+        ImageProcessor processor = poolEnabled ? pooled(BatchDialect.IMAGEMAGICK)
+                : new ImageMagickProcessor(processExecutor, processLimits());
+        return new MeteredImageProcessor(processor, "imagemagick", meterRegistry);
+    }
+
+    /**
+     * Az elérhető eszközökből összeállított útválasztó processzor. A JVM-en belüli feldolgozó mindig
+     * elérhető, így tartalékként akkor is működik, ha egyik külső eszköz sincs telepítve.
+     */
+    private ImageProcessor routing(MeterRegistry meterRegistry, ProcessExecutor processExecutor) throws InterruptedException {
+        List<RoutingImageProcessor.Backend> backends = new ArrayList<>();
+        if (ToolAvailability.isGraphicsMagickAvailable()) {
+            backends.add(new RoutingImageProcessor.Backend("graphicsmagick", graphicsMagick(meterRegistry, processExecutor)));
+        }
+        if (ToolAvailability.isImageMagickAvailable()) {
+            backends.add(new RoutingImageProcessor.Backend("imagemagick", imageMagick(meterRegistry, processExecutor)));
+        }
+        backends.add(new RoutingImageProcessor.Backend("java", java(meterRegistry)));
+        log.info("Automatic image processor selection between: {}",
+                backends.stream().map(RoutingImageProcessor.Backend::name).toList());
+
+        RoutingImageProcessor router = new RoutingImageProcessor(backends, routingLargeThresholdBytes,
+                routingFailureCooldownMillis, routingExplorationInterval);
+        if (routingCalibrate && backends.size() > 1) {
+            router.calibrate();
+        }
+        return router;
+    }
+
+    private ProcessLimits processLimits() {
+        return new ProcessLimits(execMemoryLimit, execThreadLimit);
+    }
+
+    private ImageProcessor pooled(BatchDialect dialect) {
+        return new PooledImageProcessor(dialect, poolSize, maxJobsPerWorker, jobTimeoutMillis, healthCheckIntervalMillis,
+                execQueueTimeoutMillis, execRetryAfterSeconds, processLimits());
     }
 }
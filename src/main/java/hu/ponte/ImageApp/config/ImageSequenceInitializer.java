@@ -0,0 +1,51 @@
+package hu.ponte.ImageApp.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Az images tábla korábban IDENTITY azonosítókat használt. Induláskor az images_seq szekvenciát
+ * a meglévő legnagyobb azonosító fölé állítja, hogy a szekvenciából kiosztott azonosítók ne
+ * ütközzenek a régiekkel. A szekvencia értéke sosem csökken, így többszöri futtatás is biztonságos.
+ * A sémafrissítés (és így a szekvencia létrehozása) után, de még a kérések fogadása előtt fut.
+ * Csak PostgreSQL dialektus mellett fut (a régi IDENTITY oszlopok csak ott léteztek); ott viszont
+ * a sikertelen igazítás megakadályozza az indulást, mert különben az új képek a régiek
+ * azonosítóit kaphatnák.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ImageSequenceInitializer implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageSequenceInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public ImageSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (!(dialect instanceof PostgreSQLDialect)) {
+            log.debug("Skipping images_seq alignment for {}", dialect.getClass().getSimpleName());
+            return;
+        }
+        try {
+            jdbcTemplate.execute("SELECT setval('images_seq', GREATEST((SELECT last_value FROM images_seq), "
+                    + "(SELECT COALESCE(MAX(id), 0) FROM images) + 50))");
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not align images_seq with existing image ids", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package hu.ponte.ImageApp.config;
+
+import hu.ponte.ImageApp.pipeline.PipelineStage;
+import hu.ponte.ImageApp.pipeline.UploadPipeline;
+import hu.ponte.ImageApp.util.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A párhuzamos feltöltési folyamat konfigurációja. Minden érték esetén a 0 azt jelenti,
+ * hogy a gép processzormagjainak számát használjuk.
+ */
+@Configuration
+public class UploadPipelineConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadPipelineConfig.class);
+
+    /**
+     * A feltöltések feldolgozását végző szálkészlet. Virtuális szálas módban (Java 21 vagy újabb)
+     * minden fájl saját virtuális szálon fut, így a gm/magick folyamatokra és a JDBC-re várakozó
+     * feldolgozások nem foglalnak platform szálat; a párhuzamosságot ekkor csak a lépések
+     * szemaforjai korlátozzák.
+     *
+     * @param threads        A szálak száma (virtuális szálas módban nem használt).
+     * @param virtualThreads Ha true, és a JVM támogatja, virtuális szálakat használunk.
+     * @return A szálkészlet.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService imagePipelineExecutor(@Value("${image.pipeline.threads:0}") int threads,
+                                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            Optional<ExecutorService> executor = VirtualThreads.newThreadPerTaskExecutor("image-pipeline-");
+            if (executor.isPresent()) {
+                log.info("Upload pipeline runs on virtual threads");
+                return executor.get();
+            }
+            log.warn("spring.threads.virtual.enabled is set, but Java {} has no virtual threads; using {} platform threads",
+                    Runtime.version().feature(), orCores(threads));
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "image-pipeline-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(orCores(threads), threadFactory);
+    }
+
+    /**
+     * A feltöltési folyamat, lépésenként konfigurálható párhuzamossággal. Az adatbázist használó
+     * lépések együttes korlátja alapértelmezésben a Hikari kapcsolatkészlet mérete.
+     *
+     * @return A feltöltési folyamat.
+     */
+    @Bean
+    public UploadPipeline uploadPipeline(ExecutorService imagePipelineExecutor, MeterRegistry meterRegistry,
+                                         @Value("${image.pipeline.validate.concurrency:0}") int validate,
+                                         @Value("${image.pipeline.resize.concurrency:0}") int resize,
+                                         @Value("${image.pipeline.encrypt.concurrency:0}") int encrypt,
+                                         @Value("${image.pipeline.persist.concurrency:0}") int persist,
+                                         @Value("${image.pipeline.database.concurrency:${spring.datasource.hikari.maximum-pool-size:10}}")
+                                         int database) {
+        Map<PipelineStage, Integer> concurrency = new EnumMap<>(PipelineStage.class);
+        concurrency.put(PipelineStage.VALIDATE, orCores(validate));
+        concurrency.put(PipelineStage.RESIZE, orCores(resize));
+        concurrency.put(PipelineStage.ENCRYPT, orCores(encrypt));
+        concurrency.put(PipelineStage.PERSIST, orCores(persist));
+        return new UploadPipeline(imagePipelineExecutor, concurrency, database, meterRegistry);
+    }
+
+    private static int orCores(int value) {
+        return value > 0 ? value : Runtime.getRuntime().availableProcessors();
+    }
+}
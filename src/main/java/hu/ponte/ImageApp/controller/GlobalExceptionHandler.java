@@ -1,6 +1,15 @@
 package hu.ponte.ImageApp.controller;
 
 import hu.ponte.ImageApp.exception.FileNotFoundException;
+import hu.ponte.ImageApp.exception.JobNotFoundException;
+import hu.ponte.ImageApp.exception.UploadQueueFullException;
+import hu.ponte.ImageApp.processor.ProcessSaturatedException;
+import hu.ponte.ImageApp.service.ImageService;
+import hu.ponte.ImageApp.util.ErrorMessages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -11,16 +20,50 @@ import java.nio.file.FileAlreadyExistsException;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
     @ExceptionHandler(FileAlreadyExistsException.class)
     public ResponseEntity<String> handleFileAlreadyExists(FileAlreadyExistsException e) {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
     }
 
+    /**
+     * A fájlnév egyedi indexének ütközése, amelyet a validálás nem fogott meg, mert egy párhuzamos
+     * kérés közben mentette el ugyanazt a nevet. Minden más adatintegritási hiba szerverhiba.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleDataIntegrityViolation(DataIntegrityViolationException e) {
+        if (ImageService.isFileNameConflict(e)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ErrorMessages.CONCURRENT_MODIFICATION);
+        }
+        log.error("Unexpected data integrity violation", e);
+        return handleGeneralException(e);
+    }
+
     @ExceptionHandler(FileNotFoundException.class)
     public ResponseEntity<String> handleFileNotFoundException(FileNotFoundException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<String> handleJobNotFoundException(JobNotFoundException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(UploadQueueFullException.class)
+    public ResponseEntity<String> handleUploadQueueFullException(UploadQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ProcessSaturatedException.class)
+    public ResponseEntity<String> handleProcessSaturatedException(ProcessSaturatedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ErrorMessages.PROCESSING_CAPACITY_EXCEEDED);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<String> handleIllegalArgumentException(Exception ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
@@ -1,54 +1,102 @@
 package hu.ponte.ImageApp.controller;
 
-import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.dto.ImageListResponse;
+import hu.ponte.ImageApp.job.UploadJobService;
+import hu.ponte.ImageApp.pipeline.UploadProgressListener;
+import hu.ponte.ImageApp.processor.EncodingOptions;
+import hu.ponte.ImageApp.service.ImageDownload;
 import hu.ponte.ImageApp.service.ImageService;
-import hu.ponte.ImageApp.util.AESUtil;
+import hu.ponte.ImageApp.service.VariantService;
+import hu.ponte.ImageApp.service.ZipExportService;
+import hu.ponte.ImageApp.service.ZipSelection;
+import hu.ponte.ImageApp.util.ErrorMessages;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
 public class ImageController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final ImageService imageService;
+    private final VariantService variantService;
+    private final UploadJobService uploadJobService;
+    private final ZipExportService zipExportService;
+    private final long cacheMaxAgeSeconds;
 
     @Autowired
-    public ImageController(ImageService imageService) {
+    public ImageController(ImageService imageService, VariantService variantService, UploadJobService uploadJobService,
+                           ZipExportService zipExportService,
+                           @Value("${image.download.cache-max-age-seconds:3600}") long cacheMaxAgeSeconds) {
         this.imageService = imageService;
+        this.variantService = variantService;
+        this.uploadJobService = uploadJobService;
+        this.zipExportService = zipExportService;
+        this.cacheMaxAgeSeconds = cacheMaxAgeSeconds;
     }
 
     /**
-     * Képfájlok feltöltése és átméretezése.
+     * Képfájlok feltöltése és átméretezése. A kódolási paraméterek az alkalmazás
+     * "image.encoding.*" beállításait írják felül; a meg nem adottak az alapértelmezést követik.
      *
-     * @param files  Több képfájl is feltölthető egyszerre.
-     * @param width  Az átméretezéshez szükséges szélesség pixelben.
-     * @param height Az átméretezéshez szükséges magasság pixelben.
-     * @return HTTP válasz, amely siker vagy hibajelzést ad vissza.
+     * @param files          Több képfájl is feltölthető egyszerre.
+     * @param width          Az átméretezéshez szükséges szélesség pixelben.
+     * @param height         Az átméretezéshez szükséges magasság pixelben.
+     * @param async          Ha true, a feltöltés háttérfeladatként fut, és a válasz azonnal visszatér a feladat adataival.
+     * @param quality        A JPEG/WebP minőség (1-100).
+     * @param strip          A metaadatok (EXIF, ICC profil, beágyazott előnézet) eltávolítása.
+     * @param progressive    Progresszív JPEG kimenet.
+     * @param pngCompression A PNG tömörítési szint (0-9).
+     * @param format         A kimenet formátuma (pl. "webp"), ha az eltér a feltöltött képétől.
+     * @return HTTP válasz, amely siker vagy hibajelzést ad vissza; aszinkron esetben 202 és a feladat állapota.
      * @throws Exception Ha valamilyen hiba történik a feltöltés vagy átméretezés során.
      */
     @Operation(summary = "Képfájlok feltöltése", description = "Több kép feltöltése és átméretezése.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Sikeres feltöltés."),
-            @ApiResponse(responseCode = "400", description = "Érvénytelen fájlformátum vagy méret."),
-            @ApiResponse(responseCode = "500", description = "Szerverhiba történt.")
+            @ApiResponse(responseCode = "202", description = "A feltöltési feladat sorba került."),
+            @ApiResponse(responseCode = "400", description = "Érvénytelen fájlformátum, méret vagy kódolási beállítás."),
+            @ApiResponse(responseCode = "500", description = "Szerverhiba történt."),
+            @ApiResponse(responseCode = "503", description = "A feltöltési sor megtelt (Retry-After fejléccel).")
     })
     @PostMapping
-    public ResponseEntity<String> uploadFiles(@RequestParam("files") MultipartFile[] files,
-                                              @RequestParam("width") int width,
-                                              @RequestParam("height") int height) throws Exception {
+    public ResponseEntity<?> uploadFiles(@RequestParam("files") MultipartFile[] files,
+                                         @RequestParam("width") int width,
+                                         @RequestParam("height") int height,
+                                         @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                         @RequestParam(value = "quality", required = false) Integer quality,
+                                         @RequestParam(value = "strip", required = false) Boolean strip,
+                                         @RequestParam(value = "progressive", required = false) Boolean progressive,
+                                         @RequestParam(value = "pngCompression", required = false) Integer pngCompression,
+                                         @RequestParam(value = "format", required = false) String format)
+            throws Exception {
+        EncodingOptions encoding = imageService.encodingOptions(quality, strip, progressive, pngCompression, format);
+        if (async) {
+            String jobId = uploadJobService.submit(files, width, height, encoding);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/jobs/" + jobId))
+                    .body(uploadJobService.getStatus(jobId));
+        }
         try {
-            imageService.handleImageUpload(files, width, height);
+            imageService.handleImageUpload(files, width, height, encoding, UploadProgressListener.NONE);
             return ResponseEntity.ok("Fájlok sikeresen feltöltve.");
         } catch (Exception e) {
             throw e;
@@ -56,42 +104,106 @@ public class ImageController {
     }
 
     /**
-     * Titkosított kép letöltése fájlnév alapján.
+     * A tárolt képek metaadatainak listázása kulcs alapú lapozással.
      *
-     * @param fileName A letölteni kívánt fájl neve.
-     * @return HTTP válasz a fájl tartalmával vagy hibaüzenettel.
+     * @param after Az előző oldal utolsó azonosítója (a válasz nextCursor mezője); az első oldalnál elhagyható.
+     * @param size  Az oldal mérete (legfeljebb {@value #MAX_PAGE_SIZE}).
+     * @return A képek metaadatai és a következő oldal kurzora.
+     */
+    @Operation(summary = "Képek listázása", description = "A tárolt képek metaadatai, kulcs alapú lapozással.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sikeres lekérdezés."),
+            @ApiResponse(responseCode = "400", description = "Érvénytelen oldalméret.")
+    })
+    @GetMapping
+    public ResponseEntity<ImageListResponse> listFiles(@RequestParam(value = "after", required = false) Long after,
+                                                       @RequestParam(value = "size", defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format(ErrorMessages.INVALID_PAGE_SIZE, MAX_PAGE_SIZE));
+        }
+        return ResponseEntity.ok(imageService.listImages(after, size));
+    }
+
+    /**
+     * Titkosított kép letöltése fájlnév alapján. A válasz a tartalom hash-éből képzett erős ETag-et
+     * és Last-Modified fejlécet tartalmaz; egyező If-None-Match (vagy If-Modified-Since) esetén 304
+     * a válasz, a tartalom betöltése és visszafejtése nélkül. Range kérésre 206 a válasz a kért tartománnyal.
+     * Ha a w és h paraméterek meg vannak adva, a kép ebbe a méretbe illesztett változata kerül letöltésre;
+     * a változat az első kéréskor készül el, és tárolásra kerül.
+     *
+     * @param fileName   A letölteni kívánt fájl neve.
+     * @param width      A kért változat szélessége (opcionális, a h paraméterrel együtt adható meg).
+     * @param height     A kért változat magassága (opcionális, a w paraméterrel együtt adható meg).
+     * @param webRequest Az aktuális kérés a feltételes fejlécek ellenőrzéséhez.
+     * @return HTTP válasz a fájl tartalmával vagy hibaüzenettel; 304 esetén null.
      * @throws Exception Ha a fájl letöltése sikertelen.
      */
     @Operation(summary = "Kép letöltése", description = "Titkosított kép letöltése fájlnév alapján.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Sikeres letöltés."),
+            @ApiResponse(responseCode = "206", description = "A kért tartomány sikeres letöltése."),
+            @ApiResponse(responseCode = "304", description = "A kép nem változott."),
+            @ApiResponse(responseCode = "400", description = "Érvénytelen változatméret."),
             @ApiResponse(responseCode = "404", description = "A megadott fájl nem található."),
             @ApiResponse(responseCode = "500", description = "Szerverhiba történt.")
     })
     @GetMapping("/{fileName}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable("fileName") String fileName) throws Exception {
+    public ResponseEntity<Resource> downloadFile(@PathVariable("fileName") String fileName,
+                                                 @RequestParam(value = "w", required = false) Integer width,
+                                                 @RequestParam(value = "h", required = false) Integer height,
+                                                 WebRequest webRequest) throws Exception {
         try {
-            byte[] fileData = imageService.downloadFile(fileName);
-            String fileExtension = getFileExtension(fileName);
-            String contentType;
-            if ("png".equalsIgnoreCase(fileExtension)) {
-                contentType = "image/png";
-            } else if ("jpg".equalsIgnoreCase(fileExtension) || "jpeg".equalsIgnoreCase(fileExtension)) {
-                contentType = "image/jpeg";
-            } else {
+            if ((width == null) != (height == null)) {
+                throw new IllegalArgumentException(ErrorMessages.VARIANT_SIZE_REQUIRED);
+            }
+            ImageDownload download = width != null
+                    ? variantService.downloadVariant(fileName, width, height)
+                    : imageService.downloadFile(fileName);
+            // A feltöltéskor rögzített típus; a régi képeknél a kiterjesztésből határozzuk meg
+            String contentType = download.contentType() != null ? download.contentType() : contentTypeFromExtension(fileName);
+            if (contentType == null) {
                 return ResponseEntity.badRequest().body(null);
             }
 
-            return ResponseEntity.ok()
+            String eTag = download.contentHash() != null ? "\"" + download.contentHash() + "\"" : null;
+            long lastModified = download.uploadedAt() != null ? download.uploadedAt().toEpochMilli() : -1;
+            if (webRequest.checkNotModified(eTag, lastModified)) {
+                return null;
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header("Content-Type", contentType)
                     .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
-                    .body(fileData);
+                    .cacheControl(CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS));
+            if (eTag != null) {
+                response.eTag(eTag);
+            }
+            if (lastModified >= 0) {
+                response.lastModified(lastModified);
+            }
+            return response.body(download.content());
 
         } catch (Exception e) {
             throw e;
         }
     }
 
+    /**
+     * A tartalom típusának meghatározása a fájl kiterjesztése alapján.
+     *
+     * @param fileName A fájl neve.
+     * @return A MIME típus, vagy null, ha a kiterjesztés nem támogatott.
+     */
+    private String contentTypeFromExtension(String fileName) {
+        String fileExtension = getFileExtension(fileName);
+        if ("png".equalsIgnoreCase(fileExtension)) {
+            return "image/png";
+        } else if ("jpg".equalsIgnoreCase(fileExtension) || "jpeg".equalsIgnoreCase(fileExtension)) {
+            return "image/jpeg";
+        }
+        return null;
+    }
+
     /**
      * A fájl kiterjesztésének meghatározása.
      *
@@ -107,38 +219,35 @@ public class ImageController {
     }
 
     /**
-     * Az összes fájl letöltése egy ZIP fájlban.
+     * A fájlok letöltése egy ZIP fájlban. Paraméterek nélkül minden fájl bekerül; a megadott
+     * feltételek (fájlnevek, azonosító tartomány, feltöltési időszak) egyszerre érvényesek.
+     * A ZIP tartalom közvetlenül a válaszba íródik, így a teljes archívum sosem kerül a memóriába.
      *
-     * @return ZIP fájl a titkosított képekkel vagy hibaüzenettel.
-     * @throws Exception Ha a ZIP fájl létrehozása vagy a fájlok beillesztése sikertelen.
+     * @param names  A letöltendő fájlok nevei (opcionális, többször is megadható).
+     * @param fromId A legkisebb azonosító (opcionális).
+     * @param toId   A legnagyobb azonosító (opcionális).
+     * @param from   A feltöltés legkorábbi időpontja ISO-8601 formában (opcionális).
+     * @param to     A feltöltési időszak vége ISO-8601 formában, a határ már nem tartozik bele (opcionális).
+     * @return ZIP fájl a visszafejtett képekkel.
      */
-    @Operation(summary = "Minden fájl letöltése ZIP-ben", description = "Az összes fájl letöltése egy ZIP fájlban.")
+    @Operation(summary = "Fájlok letöltése ZIP-ben", description = "A kiválasztott (alapértelmezés szerint az összes) fájl letöltése egy ZIP fájlban.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Sikeres ZIP letöltés."),
+            @ApiResponse(responseCode = "400", description = "Érvénytelen kiválasztás."),
             @ApiResponse(responseCode = "500", description = "Szerverhiba történt.")
     })
     @GetMapping("/zip")
-    public ResponseEntity<byte[]> downloadAllFilesAsZip() throws Exception {
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ZipOutputStream zipOut = new ZipOutputStream(byteArrayOutputStream);
-
-            List<ImageEntity> images = imageService.getAllImages();
-            for (ImageEntity image : images) {
-                ZipEntry zipEntry = new ZipEntry(image.getFileName());
-                zipOut.putNextEntry(zipEntry);
-                byte[] decryptedImage = AESUtil.decrypt(image.getEncryptedData());
-                zipOut.write(decryptedImage);
-                zipOut.closeEntry();
-            }
-
-            zipOut.close();
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=images.zip")
-                    .header(HttpHeaders.CONTENT_TYPE, "application/zip")
-                    .body(byteArrayOutputStream.toByteArray());
-        } catch (Exception e) {
-            throw e;
-        }
+    public ResponseEntity<StreamingResponseBody> downloadAllFilesAsZip(
+            @RequestParam(value = "names", required = false) List<String> names,
+            @RequestParam(value = "fromId", required = false) Long fromId,
+            @RequestParam(value = "toId", required = false) Long toId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        ZipSelection selection = new ZipSelection(names, fromId, toId, from, to);
+        StreamingResponseBody body = outputStream -> zipExportService.writeImagesAsZip(selection, outputStream);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=images.zip")
+                .header(HttpHeaders.CONTENT_TYPE, "application/zip")
+                .body(body);
     }
 }
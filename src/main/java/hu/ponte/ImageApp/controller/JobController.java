@@ -0,0 +1,41 @@
+package hu.ponte.ImageApp.controller;
+
+import hu.ponte.ImageApp.job.UploadJobService;
+import hu.ponte.ImageApp.job.UploadJobStatus;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    private final UploadJobService uploadJobService;
+
+    @Autowired
+    public JobController(UploadJobService uploadJobService) {
+        this.uploadJobService = uploadJobService;
+    }
+
+    /**
+     * Aszinkron feltöltési feladat állapotának lekérdezése.
+     *
+     * @param jobId A feladat azonosítója.
+     * @return A feladat és a fájljai feldolgozási állapota.
+     */
+    @Operation(summary = "Feltöltési feladat állapota", description = "Az aszinkron feltöltés fájlonkénti előrehaladása.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sikeres lekérdezés."),
+            @ApiResponse(responseCode = "404", description = "A feladat nem található vagy már lejárt.")
+    })
+    @GetMapping("/{jobId}")
+    public ResponseEntity<UploadJobStatus> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(uploadJobService.getStatus(jobId));
+    }
+}
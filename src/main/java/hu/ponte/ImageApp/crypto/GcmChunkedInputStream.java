@@ -0,0 +1,107 @@
+package hu.ponte.ImageApp.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link GcmChunkedOutputStream} által készített adatokat darabonként visszafejtő stream.
+ * Egy darab akkor az utolsó, ha rövidebb a teljes darabméretnél, vagy ha utána véget ér a bemenet;
+ * ennek a nonce-ban rögzített "utolsó" jelzéssel egyeznie kell, különben a hitelesítés sikertelen.
+ */
+class GcmChunkedInputStream extends InputStream {
+
+    private final InputStream input;
+    private final ImageCipher imageCipher;
+    private final byte[] header;
+    private final SecretKey streamKey;
+    private final byte[] frame;
+    private byte[] plain = new byte[0];
+    private int position;
+    private int counter;
+    private int pending = -1;
+    private boolean finished;
+
+    GcmChunkedInputStream(InputStream input, ImageCipher imageCipher) throws IOException {
+        this.input = input;
+        this.imageCipher = imageCipher;
+        this.header = input.readNBytes(ImageCipher.HEADER_LENGTH);
+        if (header.length < ImageCipher.HEADER_LENGTH || header[ImageCipher.MAGIC.length] != ImageCipher.VERSION) {
+            throw new IOException("Invalid encrypted image header");
+        }
+        int chunkSize = ImageCipher.chunkSizeOf(header);
+        if (chunkSize < 1 || chunkSize > ImageCipher.MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size in encrypted image header: " + chunkSize);
+        }
+        this.streamKey = imageCipher.streamKey(header);
+        // Egy darab és a következő darab első bájtja, amellyel a bemenet végét ellenőrizzük
+        this.frame = new byte[chunkSize + ImageCipher.TAG_LENGTH + 1];
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == plain.length) {
+            if (finished) {
+                return -1;
+            }
+            nextChunk();
+        }
+        int count = Math.min(length, plain.length - position);
+        System.arraycopy(plain, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Beolvassa és hitelesíti az első darabot, így a formátum hibája már a stream megnyitásakor kiderül.
+     *
+     * @throws IOException Ha a darab nem olvasható, vagy a hitelesítése sikertelen.
+     */
+    void readFirstChunk() throws IOException {
+        if (counter == 0 && !finished) {
+            nextChunk();
+        }
+    }
+
+    @Override
+    public int available() {
+        return plain.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void nextChunk() throws IOException {
+        int frameLength = frame.length - 1;
+        int read = 0;
+        if (pending >= 0) {
+            frame[read++] = (byte) pending;
+            pending = -1;
+        }
+        read += input.readNBytes(frame, read, frame.length - read);
+        boolean last = read <= frameLength;
+        if (!last) {
+            pending = frame[frameLength] & 0xFF;
+            read = frameLength;
+        }
+        if (read < ImageCipher.TAG_LENGTH) {
+            throw new IOException("Truncated encrypted image chunk");
+        }
+        byte[] nonce = ImageCipher.nonce(counter++, last);
+        plain = imageCipher.processChunk(Cipher.DECRYPT_MODE, streamKey, nonce, header, frame, 0, read);
+        position = 0;
+        finished = last;
+    }
+}
@@ -0,0 +1,80 @@
+package hu.ponte.ImageApp.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A beleírt adatokat rögzített méretű darabokban AES-GCM-mel titkosító stream.
+ * Egy teli darabot csak akkor ír ki, ha további adat érkezik, így a lezáráskor kiírt
+ * utolsó darab mindig megkapja az "utolsó" jelzést.
+ */
+class GcmChunkedOutputStream extends FilterOutputStream {
+
+    private final ImageCipher imageCipher;
+    private final byte[] header;
+    private final SecretKey streamKey;
+    private final byte[] buffer;
+    private int buffered;
+    private int counter;
+    private boolean closed;
+
+    GcmChunkedOutputStream(OutputStream output, ImageCipher imageCipher, byte[] header, SecretKey streamKey,
+                           int chunkSize) throws IOException {
+        super(output);
+        this.imageCipher = imageCipher;
+        this.header = header;
+        this.streamKey = streamKey;
+        this.buffer = new byte[chunkSize];
+        output.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (length > 0) {
+            if (buffered == buffer.length) {
+                writeChunk(false);
+            }
+            int count = Math.min(length, buffer.length - buffered);
+            System.arraycopy(data, offset, buffer, buffered, count);
+            buffered += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // A nem teli darabot nem lehet kiírni lezárás előtt; csak a már titkosított adatot ürítjük
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeChunk(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean last) throws IOException {
+        byte[] nonce = ImageCipher.nonce(counter++, last);
+        out.write(imageCipher.processChunk(Cipher.ENCRYPT_MODE, streamKey, nonce, header, buffer, 0, buffered));
+        buffered = 0;
+    }
+}
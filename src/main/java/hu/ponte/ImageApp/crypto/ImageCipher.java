@@ -0,0 +1,287 @@
+package hu.ponte.ImageApp.crypto;
+
+import hu.ponte.ImageApp.util.AESUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * A képek titkosítását és visszafejtését végző komponens, amely az {@link AESUtil} statikus
+ * metódusait váltja ki.
+ * <p>
+ * A kulcsot egyszer, induláskor tölti be, a Cipher példányokat szálanként újrahasznosítja.
+ * Az új adatok darabolt AES-GCM formátumban készülnek: egy verziózott fejlécet követően a tartalom
+ * rögzített méretű darabokban, darabonként hitelesítve kerül titkosításra, így streamként is
+ * titkosítható és visszafejthető anélkül, hogy a teljes kép a memóriába kerülne. Minden stream
+ * a fejlécébe írt véletlen sóból származtatott saját kulcsot kap (lásd {@link #streamKey}).
+ * A régi (AES/ECB, fejléc nélküli) formátumban tárolt adatokat is vissza tudja fejteni; a formátumot
+ * a tömbös és a streames visszafejtés ugyanazzal a felismeréssel választja ki (lásd {@link #decryptingStream}).
+ */
+@Component
+public class ImageCipher {
+
+    static final byte[] MAGIC = {'P', 'N', 'T', 'E'};
+    /**
+     * A formátum verziója: a fejlécben egy 16 bájtos véletlen só, amelyből HKDF-fel streamenként
+     * saját kulcsot származtatunk; a darabok nonce-a ezen a kulcson belül csak a sorszám.
+     */
+    static final byte VERSION = 2;
+    static final int PREFIX_LENGTH = MAGIC.length + 1;
+    static final int SALT_LENGTH = 16;
+    static final int HEADER_LENGTH = PREFIX_LENGTH + Integer.BYTES + SALT_LENGTH;
+    /**
+     * A nonce-ban a darab sorszáma előtti, mindig nulla bájtok száma.
+     */
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+    /**
+     * A legnagyobb elfogadott darabméret. A visszafejtés egy teljes darabot pufferel, így a fejlécben
+     * megadott méretet e fölött elutasítjuk, hogy egy hamis fejléc ne kényszeríthessen óriási foglalást.
+     */
+    static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final byte[] HKDF_INFO = "ponte-image-chunk-key-v2".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String LEGACY_TRANSFORMATION = "AES";
+
+    private final SecretKey secretKey;
+    private final int chunkSize;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<Cipher> gcmCiphers = ThreadLocal.withInitial(() -> newCipher(GCM_TRANSFORMATION));
+
+    /**
+     * @param chunkSize A titkosított darabok mérete bájtban.
+     * @throws Exception Ha a kulcs betöltése sikertelen.
+     */
+    @Autowired
+    public ImageCipher(@Value("${app.encryption.chunk-size:65536}") int chunkSize) throws Exception {
+        this(AESUtil.loadSecretKey(), chunkSize);
+    }
+
+    /**
+     * @param secretKey A titkosításhoz használt kulcs.
+     * @param chunkSize A titkosított darabok mérete bájtban.
+     */
+    public ImageCipher(SecretKey secretKey, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("A darabméret 1 és " + MAX_CHUNK_SIZE + " bájt között kell legyen.");
+        }
+        this.secretKey = secretKey;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Adatok titkosítása darabolt AES-GCM formátumban.
+     *
+     * @param data A titkosítandó adatok byte tömbje.
+     * @return A titkosított byte tömb.
+     * @throws IOException ha a titkosítás sikertelen.
+     */
+    public byte[] encrypt(byte[] data) throws IOException {
+        int chunks = Math.max(1, (data.length + chunkSize - 1) / chunkSize);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(HEADER_LENGTH + data.length + chunks * TAG_LENGTH);
+        try (OutputStream encrypting = encryptingStream(output)) {
+            encrypting.write(data);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Adatok visszafejtése. A formátumot a {@link #decryptingStream} felismerése választja ki.
+     *
+     * @param data A visszafejtendő adatok byte tömbje.
+     * @return A visszafejtett byte tömb.
+     * @throws IOException ha a visszafejtés sikertelen.
+     */
+    public byte[] decrypt(byte[] data) throws IOException {
+        try (InputStream decrypting = decryptingStream(new ByteArrayInputStream(data))) {
+            return decrypting.readAllBytes();
+        }
+    }
+
+    /**
+     * Olyan streamet ad vissza, amely a beleírt adatokat titkosítva továbbítja a megadott kimenetre.
+     * A titkosítás csak a visszaadott stream lezárásakor válik teljessé; a lezárás az alatta lévő
+     * kimenetet is lezárja.
+     *
+     * @param output A titkosított adatok célja.
+     * @return A titkosító stream.
+     * @throws IOException ha a fejléc nem írható.
+     */
+    public OutputStream encryptingStream(OutputStream output) throws IOException {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        byte[] header = header(chunkSize, salt);
+        return new GcmChunkedOutputStream(output, this, header, streamKey(header), chunkSize);
+    }
+
+    /**
+     * Olyan streamet ad vissza, amely a megadott bemenetről olvasott titkosított adatokat visszafejti.
+     * Mindkét tárolási formátumot kezeli, és ez az egyetlen formátumfelismerés (a {@link #decrypt}
+     * is ezt használja): ha a bemenet érvényes fejléccel kezdődik, az első darabot azonnal
+     * visszafejtjük és hitelesítjük. Egy régi formátumú adat elvétve a fejléccel azonos bájtokkal
+     * is kezdődhet; ilyenkor az első darab hitelesítése sikertelen, és az adatot régi formátumúként
+     * fejtjük vissza.
+     *
+     * @param input A titkosított adatok forrása.
+     * @return A visszafejtett adatok streamje.
+     * @throws IOException ha a bemenet nem olvasható.
+     */
+    public InputStream decryptingStream(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(HEADER_LENGTH);
+        byte[] header = buffered.readNBytes(HEADER_LENGTH);
+        buffered.reset();
+        if (hasHeader(header)) {
+            // A fejléc és az első darab visszaolvasható marad a régi formátumra váltáshoz
+            buffered.mark(HEADER_LENGTH + chunkSizeOf(header) + TAG_LENGTH + 1);
+            GcmChunkedInputStream chunked = new GcmChunkedInputStream(buffered, this);
+            try {
+                chunked.readFirstChunk();
+                return chunked;
+            } catch (IOException e) {
+                if (!(e.getCause() instanceof AEADBadTagException)) {
+                    throw e;
+                }
+                buffered.reset();
+            }
+        }
+        Cipher cipher = newCipher(LEGACY_TRANSFORMATION);
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to initialize legacy cipher", e);
+        }
+        return new CipherInputStream(buffered, cipher);
+    }
+
+    /**
+     * Titkosít vagy visszafejt egy darabot a szál saját GCM Cipher példányával.
+     */
+    byte[] processChunk(int mode, SecretKey streamKey, byte[] nonce, byte[] aad, byte[] data, int offset, int length)
+            throws IOException {
+        Cipher cipher = gcmCiphers.get();
+        try {
+            cipher.init(mode, streamKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(aad);
+            return cipher.doFinal(data, offset, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Image chunk " + (mode == Cipher.ENCRYPT_MODE ? "encryption" : "decryption") + " failed", e);
+        }
+    }
+
+    /**
+     * A stream darabjainak kulcsa: a fejléc sójából HKDF-SHA256-tal származtatott, csak ehhez a
+     * streamhez tartozó kulcs. A streamenkénti kulcs miatt a sorszám alapú nonce-ok sosem
+     * ismétlődnek ugyanazzal a kulccsal, akárhány kép készül is.
+     *
+     * @param header A stream teljes fejléce.
+     * @throws IOException Ha a kulcs nem származtatható.
+     */
+    SecretKey streamKey(byte[] header) throws IOException {
+        byte[] salt = Arrays.copyOfRange(header, header.length - SALT_LENGTH, header.length);
+        byte[] masterKey = secretKey.getEncoded();
+        try {
+            return new SecretKeySpec(hkdfSha256(masterKey, salt, HKDF_INFO, masterKey.length), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to derive image stream key", e);
+        }
+    }
+
+    /**
+     * HKDF (RFC 5869) HMAC-SHA256-tal: a kivonatolás a sóval, majd a kiterjesztés a megadott hosszra.
+     */
+    static byte[] hkdfSha256(byte[] inputKey, byte[] salt, byte[] info, int length) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+        byte[] pseudoRandomKey = mac.doFinal(inputKey);
+        mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+        byte[] output = new byte[length];
+        byte[] block = new byte[0];
+        for (int offset = 0, counter = 1; offset < length; counter++) {
+            mac.update(block);
+            mac.update(info);
+            mac.update((byte) counter);
+            block = mac.doFinal();
+            int count = Math.min(block.length, length - offset);
+            System.arraycopy(block, 0, output, offset, count);
+            offset += count;
+        }
+        return output;
+    }
+
+    /**
+     * Összeállítja egy darab nonce-át: nulla bájtok, a darab sorszáma, és egy jelző, hogy ez-e az
+     * utolsó darab (ez akadályozza meg a csonkítást).
+     */
+    static byte[] nonce(int counter, boolean last) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        nonce[NONCE_PREFIX_LENGTH] = (byte) (counter >>> 24);
+        nonce[NONCE_PREFIX_LENGTH + 1] = (byte) (counter >>> 16);
+        nonce[NONCE_PREFIX_LENGTH + 2] = (byte) (counter >>> 8);
+        nonce[NONCE_PREFIX_LENGTH + 3] = (byte) counter;
+        nonce[NONCE_LENGTH - 1] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    static byte[] header(int chunkSize, byte[] salt) {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        header[PREFIX_LENGTH] = (byte) (chunkSize >>> 24);
+        header[PREFIX_LENGTH + 1] = (byte) (chunkSize >>> 16);
+        header[PREFIX_LENGTH + 2] = (byte) (chunkSize >>> 8);
+        header[PREFIX_LENGTH + 3] = (byte) chunkSize;
+        System.arraycopy(salt, 0, header, PREFIX_LENGTH + Integer.BYTES, SALT_LENGTH);
+        return header;
+    }
+
+    /**
+     * @param header A stream fejléce.
+     * @return A fejlécben megadott darabméret.
+     */
+    static int chunkSizeOf(byte[] header) {
+        return ((header[PREFIX_LENGTH] & 0xFF) << 24) | ((header[PREFIX_LENGTH + 1] & 0xFF) << 16)
+                | ((header[PREFIX_LENGTH + 2] & 0xFF) << 8) | (header[PREFIX_LENGTH + 3] & 0xFF);
+    }
+
+    /**
+     * @return true, ha az adat a darabolt formátum fejlécével (ismert verzióval és megengedett darabmérettel) kezdődik.
+     */
+    private static boolean hasHeader(byte[] data) {
+        if (data.length < HEADER_LENGTH || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+                || data[MAGIC.length] != VERSION) {
+            return false;
+        }
+        int chunkSize = chunkSizeOf(data);
+        return chunkSize >= 1 && chunkSize <= MAX_CHUNK_SIZE;
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher not available: " + transformation, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package hu.ponte.ImageApp.dto;
+
+import hu.ponte.ImageApp.repository.ImageMetadata;
+
+import java.util.List;
+
+/**
+ * A képlista egy oldala.
+ *
+ * @param items      A képek metaadatai azonosító szerint növekvő sorrendben.
+ * @param nextCursor A következő oldal lekéréséhez az "after" paraméterként átadandó azonosító,
+ *                   vagy null, ha nincs több kép.
+ */
+public record ImageListResponse(List<ImageMetadata> items, Long nextCursor) {
+}
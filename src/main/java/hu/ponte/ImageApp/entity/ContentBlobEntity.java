@@ -0,0 +1,57 @@
+package hu.ponte.ImageApp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Egy átméretezett képtartalom, amelyet a hash-e azonosít. Az azonos tartalmú képek
+ * ugyanarra a titkosított tartalomra hivatkoznak a BlobStore-ban; a hivatkozások számát
+ * a refCount tartja nyilván.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "content_blobs")
+public class ContentBlobEntity {
+
+    /**
+     * A titkosítás előtti tartalom SHA-256 hash-e.
+     */
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "content_key", nullable = false)
+    private String contentKey;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    /**
+     * A titkosítás előtti tartalom CRC-32 ellenőrzőösszege; a ZIP export tömörítetlen
+     * bejegyzéseinek fejlécébe kerül.
+     */
+    @Column(name = "crc32")
+    private Long crc32;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    /**
+     * A tartalomra hivatkozó képek száma.
+     */
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+}
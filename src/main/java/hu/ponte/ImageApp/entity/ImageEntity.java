@@ -4,19 +4,80 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Instant;
+
 @Getter
 @Setter
 @Entity
-@Table(name = "images")
+@Table(name = "images",
+        uniqueConstraints = @UniqueConstraint(name = ImageEntity.FILE_NAME_CONSTRAINT, columnNames = "file_name"))
 public class ImageEntity {
 
+    /**
+     * A fájlnév egyedi indexe: a névszerinti keresések ezt használják, és két párhuzamos
+     * feltöltés sem mentheti el ugyanazt a nevet.
+     */
+    public static final String FILE_NAME_CONSTRAINT = "uk_images_file_name";
+
+    /**
+     * Szekvencia alapú azonosító, hogy a Hibernate a beszúrásokat JDBC kötegekben végezhesse
+     * (IDENTITY esetén minden beszúrás külön utasítás). Az allocationSize miatt a szekvenciát
+     * csak minden 50. azonosítónál kell lekérdezni.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "images_seq")
+    @SequenceGenerator(name = "images_seq", sequenceName = "images_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "file_name")
     private String fileName;
 
+    /**
+     * Az átméretezett (titkosítatlan) kép mérete bájtban.
+     */
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    /**
+     * A feltöltött eredeti fájl mérete bájtban; a fileSize-zal összevetve mutatja az
+     * átméretezéssel és újrakódolással elért megtakarítást.
+     */
+    @Column(name = "original_size")
+    private Long originalSize;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "uploaded_at")
+    private Instant uploadedAt;
+
+    /**
+     * Az átméretezett (titkosítatlan) kép SHA-256 hash-e hexadecimálisan; ebből képezzük az ETag-et.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Az átméretezett (titkosítatlan) kép CRC-32 ellenőrzőösszege a ZIP exporthoz; a régi képeknél hiányzik.
+     */
+    @Column(name = "crc32")
+    private Long crc32;
+
+    /**
+     * A titkosított tartalom kulcsa a BlobStore-ban.
+     */
+    @Column(name = "content_key")
+    private String contentKey;
+
+    /**
+     * Csak a BlobStore bevezetése előtt feltöltött, még át nem helyezett képeknél van kitöltve.
+     */
     @Lob
     @Column(name = "encrypted_data")
     private byte[] encryptedData;
@@ -0,0 +1,53 @@
+package hu.ponte.ImageApp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Egy tárolt kép igény szerint előállított, más méretű változata. A titkosított tartalom
+ * az alapképhez hasonlóan a BlobStore-ban van.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "image_variants",
+        uniqueConstraints = @UniqueConstraint(name = "uk_image_variants_image_size", columnNames = {"image_id", "width", "height"}))
+public class ImageVariantEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "image_id", nullable = false)
+    private Long imageId;
+
+    /**
+     * A kért szélesség (a változat ebbe a méretbe illeszkedik).
+     */
+    @Column(name = "width", nullable = false)
+    private Integer width;
+
+    /**
+     * A kért magasság (a változat ebbe a méretbe illeszkedik).
+     */
+    @Column(name = "height", nullable = false)
+    private Integer height;
+
+    @Column(name = "content_key", nullable = false)
+    private String contentKey;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+}
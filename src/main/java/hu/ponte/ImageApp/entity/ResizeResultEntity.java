@@ -0,0 +1,56 @@
+package hu.ponte.ImageApp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Egy korábbi átméretezés eredménye: az eredeti feltöltés hash-e, a kért méret és a kódolási
+ * beállítások alapján megadja az átméretezett tartalom hash-ét, így ugyanannak a képnek az ismételt feltöltésekor
+ * az átméretezés kihagyható.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "resize_results")
+public class ResizeResultEntity {
+
+    @EmbeddedId
+    private ResizeResultId id;
+
+    /**
+     * Az átméretezett tartalom hash-e (a content_blobs tábla kulcsa).
+     */
+    @Column(name = "content_hash", length = 64, nullable = false)
+    private String contentHash;
+
+    /**
+     * Az eredeti tartalom hash-e, a kért méret és a kódolási beállítások
+     * ({@link hu.ponte.ImageApp.processor.EncodingOptions#signature()}).
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @Embeddable
+    public static class ResizeResultId implements Serializable {
+
+        @Column(name = "source_hash", length = 64)
+        private String sourceHash;
+
+        @Column(name = "width")
+        private Integer width;
+
+        @Column(name = "height")
+        private Integer height;
+
+        @Column(name = "encoding", length = 128)
+        private String encoding;
+    }
+}
@@ -0,0 +1,7 @@
+package hu.ponte.ImageApp.exception;
+
+public class JobNotFoundException extends RuntimeException {
+    public JobNotFoundException(String message) {
+        super(message);
+    }
+}
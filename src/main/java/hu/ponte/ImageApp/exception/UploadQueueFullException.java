@@ -0,0 +1,14 @@
+package hu.ponte.ImageApp.exception;
+
+public class UploadQueueFullException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public UploadQueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
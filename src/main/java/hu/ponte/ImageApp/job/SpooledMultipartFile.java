@@ -0,0 +1,102 @@
+package hu.ponte.ImageApp.job;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Ideiglenes fájlba mentett feltöltött fájl. A multipart kérés fájljai a kérés végén törlődnek,
+ * ezért az aszinkron feldolgozáshoz a tartalmat a kérés alatt ideiglenes fájlba mentjük.
+ */
+class SpooledMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+
+    private SpooledMultipartFile(String name, String originalFilename, String contentType, Path path) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.path = path;
+    }
+
+    /**
+     * Ideiglenes fájlba menti a feltöltött fájl tartalmát.
+     *
+     * @param file A feltöltött fájl.
+     * @return Az ideiglenes fájlba mentett példány.
+     * @throws IOException Ha a mentés sikertelen.
+     */
+    static SpooledMultipartFile spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("imageapp-job-", ".upload");
+        try (InputStream input = file.getInputStream()) {
+            Files.copy(input, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SpooledMultipartFile(file.getName(), file.getOriginalFilename(), file.getContentType(), path);
+    }
+
+    /**
+     * Törli az ideiglenes fájlt.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Az ideiglenes könyvtárat az operációs rendszer is takarítja
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
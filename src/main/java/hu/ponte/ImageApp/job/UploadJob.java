@@ -0,0 +1,87 @@
+package hu.ponte.ImageApp.job;
+
+import hu.ponte.ImageApp.pipeline.PipelineStage;
+import hu.ponte.ImageApp.pipeline.UploadProgressListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Egy aszinkron feltöltési feladat és a fájljainak feldolgozási állapota.
+ */
+class UploadJob implements UploadProgressListener {
+
+    private static final String QUEUED = "QUEUED";
+    private static final String DONE = "DONE";
+    private static final String FAILED = "FAILED";
+
+    private final String id;
+    private final List<String> fileNames;
+    private final AtomicReferenceArray<String> fileStages;
+    private final Instant createdAt = Instant.now();
+    private volatile UploadJobStatus.State state = UploadJobStatus.State.QUEUED;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    UploadJob(String id, List<String> fileNames) {
+        this.id = id;
+        this.fileNames = fileNames;
+        String[] stages = new String[fileNames.size()];
+        Arrays.fill(stages, QUEUED);
+        this.fileStages = new AtomicReferenceArray<>(stages);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    @Override
+    public void onStage(int fileIndex, PipelineStage stage) {
+        fileStages.set(fileIndex, stage.name());
+    }
+
+    void started() {
+        state = UploadJobStatus.State.RUNNING;
+    }
+
+    void succeeded() {
+        for (int i = 0; i < fileStages.length(); i++) {
+            fileStages.set(i, DONE);
+        }
+        finish(UploadJobStatus.State.SUCCEEDED, null);
+    }
+
+    void failed(String message) {
+        for (int i = 0; i < fileStages.length(); i++) {
+            fileStages.set(i, FAILED);
+        }
+        finish(UploadJobStatus.State.FAILED, message);
+    }
+
+    private void finish(UploadJobStatus.State finalState, String message) {
+        error = message;
+        finishedAt = Instant.now();
+        state = finalState;
+    }
+
+    /**
+     * @param now Az aktuális időpont.
+     * @param retentionMillis A befejezett feladatok megőrzési ideje.
+     * @return true, ha a feladat befejeződött, és a megőrzési ideje lejárt.
+     */
+    boolean isExpired(Instant now, long retentionMillis) {
+        Instant finished = finishedAt;
+        return finished != null && finished.plusMillis(retentionMillis).isBefore(now);
+    }
+
+    UploadJobStatus snapshot() {
+        List<UploadJobStatus.FileStatus> files = new ArrayList<>(fileNames.size());
+        for (int i = 0; i < fileNames.size(); i++) {
+            files.add(new UploadJobStatus.FileStatus(fileNames.get(i), fileStages.get(i)));
+        }
+        return new UploadJobStatus(id, state, createdAt, finishedAt, error, files);
+    }
+}
@@ -0,0 +1,164 @@
+package hu.ponte.ImageApp.job;
+
+import hu.ponte.ImageApp.exception.JobNotFoundException;
+import hu.ponte.ImageApp.exception.UploadQueueFullException;
+import hu.ponte.ImageApp.processor.EncodingOptions;
+import hu.ponte.ImageApp.service.ImageService;
+import hu.ponte.ImageApp.util.ErrorMessages;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aszinkron feltöltési feladatok kezelése. A feladatok korlátos sorba kerülnek, amelyet
+ * rögzített számú feldolgozó szál dolgoz fel; ha a sor megtelt, az új feladatot
+ * azonnal elutasítja, így a terhelés nem halmozódik fel a szerveren.
+ */
+@Service
+public class UploadJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadJobService.class);
+
+    private final ImageService imageService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final long retryAfterSeconds;
+    private final long retentionMillis;
+
+    @Autowired
+    public UploadJobService(ImageService imageService, MeterRegistry meterRegistry,
+                            @Value("${upload.jobs.workers:2}") int workers,
+                            @Value("${upload.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${upload.jobs.retry-after-seconds:10}") long retryAfterSeconds,
+                            @Value("${upload.jobs.retention-minutes:60}") long retentionMinutes) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Upload job workers and queue capacity must be at least 1");
+        }
+        this.imageService = imageService;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "upload-job-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("image.jobs.queued", executor, pool -> pool.getQueue().size())
+                .description("Number of upload jobs waiting in the queue")
+                .register(meterRegistry);
+        Gauge.builder("image.jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Number of upload jobs being processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sorba állítja a fájlok feltöltését. A fájlok tartalma ideiglenes fájlokba kerül,
+     * mert a kérés fájljai a válasz után törlődnek.
+     *
+     * @param files    A feltöltött képfájlok.
+     * @param width    Az átméretezés szélessége.
+     * @param height   Az átméretezés magassága.
+     * @param encoding Az átméretezett képek kódolása.
+     * @return A létrehozott feladat azonosítója.
+     * @throws IOException              Ha a fájlok ideiglenes mentése sikertelen.
+     * @throws UploadQueueFullException Ha a feladatsor megtelt.
+     */
+    public String submit(MultipartFile[] files, int width, int height, EncodingOptions encoding) throws IOException {
+        removeExpiredJobs();
+        // Gyors elutasítás, mielőtt a fájlokat lemezre másolnánk
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw queueFull();
+        }
+
+        List<SpooledMultipartFile> spooled = new ArrayList<>(files.length);
+        List<String> fileNames = new ArrayList<>(files.length);
+        try {
+            for (MultipartFile file : files) {
+                spooled.add(SpooledMultipartFile.spool(file));
+                fileNames.add(file.getOriginalFilename());
+            }
+        } catch (IOException | RuntimeException e) {
+            spooled.forEach(SpooledMultipartFile::delete);
+            throw e;
+        }
+
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), List.copyOf(fileNames));
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, spooled.toArray(new MultipartFile[0]), width, height, encoding, spooled));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            spooled.forEach(SpooledMultipartFile::delete);
+            throw queueFull();
+        }
+        return job.getId();
+    }
+
+    /**
+     * @param jobId A feladat azonosítója.
+     * @return A feladat aktuális állapota.
+     * @throws JobNotFoundException Ha nincs ilyen feladat, vagy a megőrzési ideje lejárt.
+     */
+    public UploadJobStatus getStatus(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new JobNotFoundException(ErrorMessages.JOB_NOT_FOUND + jobId);
+        }
+        return job.snapshot();
+    }
+
+    /**
+     * @return A várakozó és a futó feladatok száma.
+     */
+    public int getActiveJobCount() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    private void run(UploadJob job, MultipartFile[] files, int width, int height, EncodingOptions encoding,
+                     List<SpooledMultipartFile> spooled) {
+        job.started();
+        try {
+            imageService.handleImageUpload(files, width, height, encoding, job);
+            job.succeeded();
+        } catch (Exception e) {
+            log.warn("Upload job {} failed: {}", job.getId(), e.getMessage());
+            job.failed(e.getMessage());
+        } finally {
+            spooled.forEach(SpooledMultipartFile::delete);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant now = Instant.now();
+        jobs.values().removeIf(job -> job.isExpired(now, retentionMillis));
+    }
+
+    private UploadQueueFullException queueFull() {
+        return new UploadQueueFullException(ErrorMessages.UPLOAD_QUEUE_FULL, retryAfterSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
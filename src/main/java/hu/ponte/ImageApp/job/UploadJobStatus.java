@@ -0,0 +1,34 @@
+package hu.ponte.ImageApp.job;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Egy aszinkron feltöltési feladat állapota.
+ *
+ * @param id         A feladat azonosítója.
+ * @param state      A feladat állapota.
+ * @param createdAt  A feladat létrehozásának időpontja.
+ * @param finishedAt A feladat befejezésének időpontja, ha már befejeződött.
+ * @param error      A hibaüzenet, ha a feladat sikertelen.
+ * @param files      A fájlonkénti állapot a feltöltés sorrendjében.
+ */
+public record UploadJobStatus(String id, State state, Instant createdAt, Instant finishedAt, String error,
+                              List<FileStatus> files) {
+
+    /**
+     * Egy feladat állapota.
+     */
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    /**
+     * Egy fájl állapota.
+     *
+     * @param fileName A fájl neve.
+     * @param stage    A feldolgozás aktuális lépése (QUEUED, VALIDATE, RESIZE, ENCRYPT, PERSIST, DONE vagy FAILED).
+     */
+    public record FileStatus(String fileName, String stage) {
+    }
+}
@@ -0,0 +1,203 @@
+package hu.ponte.ImageApp.metrics;
+
+import hu.ponte.ImageApp.cache.DecryptedImageCache;
+import hu.ponte.ImageApp.validation.FileNameFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A feltöltések, letöltések és a ZIP export mérőszámai. Minden mérőszám előre regisztrált,
+ * így a mérés a kérések útján csak számlálók és időmérők frissítéséből áll.
+ * A feldolgozási lépések idejét az UploadPipeline, a képfeldolgozó futásait
+ * a MeteredImageProcessor méri.
+ */
+@Component
+public class ImageMetrics {
+
+    /**
+     * A letöltött tartalom forrása.
+     */
+    public enum DownloadSource {
+        /** A visszafejtett képek gyorsítótára. */
+        CACHE,
+        /** A BlobStore-ban tárolt titkosított tartalom. */
+        BLOB,
+        /** A régi, az adatbázisban tárolt titkosított tartalom. */
+        LEGACY
+    }
+
+    private final Timer uploadSuccessTimer;
+    private final Timer uploadFailureTimer;
+    private final Counter uploadedFiles;
+    private final Counter uploadBytesIn;
+    private final Counter uploadBytesStored;
+    private final Counter uploadBytesResized;
+    private final Counter uploadBytesSaved;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final Timer[] downloadTimers = new Timer[DownloadSource.values().length];
+    private final Counter downloadBytes;
+    private final Timer zipTimer;
+    private final Counter zipEntries;
+    private final Counter zipBytes;
+
+    @Autowired
+    public ImageMetrics(MeterRegistry registry, DecryptedImageCache imageCache, FileNameFilter fileNameFilter) {
+        uploadSuccessTimer = Timer.builder("image.upload")
+                .description("Duration of complete uploads")
+                .tag("outcome", "success")
+                .register(registry);
+        uploadFailureTimer = Timer.builder("image.upload")
+                .description("Duration of complete uploads")
+                .tag("outcome", "failure")
+                .register(registry);
+        uploadedFiles = Counter.builder("image.upload.files")
+                .description("Number of uploaded files")
+                .register(registry);
+        uploadBytesIn = Counter.builder("image.upload.bytes.in")
+                .description("Size of the uploaded original images")
+                .baseUnit("bytes")
+                .register(registry);
+        uploadBytesStored = Counter.builder("image.upload.bytes.stored")
+                .description("Size of the newly stored resized images (deduplicated content excluded)")
+                .baseUnit("bytes")
+                .register(registry);
+        uploadBytesResized = Counter.builder("image.upload.bytes.resized")
+                .description("Size of the resized and encoded images of all uploaded files")
+                .baseUnit("bytes")
+                .register(registry);
+        uploadBytesSaved = Counter.builder("image.upload.bytes.saved")
+                .description("Bytes saved by resizing and encoding, relative to the uploaded originals")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("image.upload.active", activeUploads, AtomicInteger::get)
+                .description("Number of uploads in progress")
+                .register(registry);
+
+        for (DownloadSource source : DownloadSource.values()) {
+            downloadTimers[source.ordinal()] = Timer.builder("image.download")
+                    .description("Time to look up and prepare a download")
+                    .tag("source", source.name().toLowerCase())
+                    .register(registry);
+        }
+        downloadBytes = Counter.builder("image.download.bytes")
+                .description("Size of the downloaded images")
+                .baseUnit("bytes")
+                .register(registry);
+
+        zipTimer = Timer.builder("image.zip.export")
+                .description("Duration of ZIP exports")
+                .register(registry);
+        zipEntries = Counter.builder("image.zip.entries")
+                .description("Number of images written to ZIP exports")
+                .register(registry);
+        zipBytes = Counter.builder("image.zip.bytes")
+                .description("Uncompressed size of the images written to ZIP exports")
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("image.cache.hits", imageCache, cache -> cache.stats().hits())
+                .description("Decrypted image cache hits")
+                .register(registry);
+        FunctionCounter.builder("image.cache.misses", imageCache, cache -> cache.stats().misses())
+                .description("Decrypted image cache misses")
+                .register(registry);
+        FunctionCounter.builder("image.cache.evictions", imageCache, cache -> cache.stats().evictions())
+                .description("Decrypted image cache evictions")
+                .register(registry);
+        Gauge.builder("image.cache.entries", imageCache, cache -> cache.stats().entries())
+                .description("Number of images in the decrypted image cache")
+                .register(registry);
+        Gauge.builder("image.cache.size", imageCache, cache -> cache.stats().bytes())
+                .description("Size of the images in the decrypted image cache")
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("image.filename.filter.lookups", fileNameFilter, filter -> filter.stats().filtered())
+                .description("File name existence checks answered by the in-memory filter")
+                .tag("result", "filtered")
+                .register(registry);
+        FunctionCounter.builder("image.filename.filter.lookups", fileNameFilter, filter -> filter.stats().databaseLookups())
+                .description("File name existence checks answered by the in-memory filter")
+                .tag("result", "database")
+                .register(registry);
+    }
+
+    /**
+     * Egy feltöltés kezdetét jelzi.
+     *
+     * @param files     A feltöltött fájlok száma.
+     * @param bytesIn   A feltöltött fájlok együttes mérete.
+     * @return A kezdés időpontja, amelyet az {@link #uploadFinished} metódusnak kell átadni.
+     */
+    public long uploadStarted(int files, long bytesIn) {
+        activeUploads.incrementAndGet();
+        uploadedFiles.increment(files);
+        uploadBytesIn.increment(bytesIn);
+        return System.nanoTime();
+    }
+
+    /**
+     * Egy feltöltés befejeződését jelzi.
+     *
+     * @param start   Az {@link #uploadStarted} által visszaadott időpont.
+     * @param success A feltöltés sikeres volt-e.
+     */
+    public void uploadFinished(long start, boolean success) {
+        (success ? uploadSuccessTimer : uploadFailureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        activeUploads.decrementAndGet();
+    }
+
+    /**
+     * @param bytes Az újonnan tárolt (átméretezett) tartalom mérete.
+     */
+    public void contentStored(long bytes) {
+        uploadBytesStored.increment(bytes);
+    }
+
+    /**
+     * Egy feltöltött fájl eredeti és átméretezett méretét rögzíti. A megtakarítás számlálója
+     * csak a csökkenést gyűjti; a nagyításból adódó növekedés a két méret számlálójából látszik.
+     *
+     * @param originalBytes A feltöltött eredeti fájl mérete.
+     * @param resizedBytes  Az átméretezett, újrakódolt kép mérete.
+     */
+    public void encoded(long originalBytes, long resizedBytes) {
+        uploadBytesResized.increment(resizedBytes);
+        if (originalBytes > resizedBytes) {
+            uploadBytesSaved.increment(originalBytes - resizedBytes);
+        }
+    }
+
+    /**
+     * @param source A letöltött tartalom forrása.
+     * @param start  A letöltés kezdetének időpontja (System.nanoTime()).
+     * @param bytes  A letöltött kép mérete.
+     */
+    public void downloaded(DownloadSource source, long start, long bytes) {
+        downloadTimers[source.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        downloadBytes.increment(bytes);
+    }
+
+    /**
+     * @param bytes A ZIP fájlba írt kép (tömörítés előtti) mérete.
+     */
+    public void zipEntryWritten(long bytes) {
+        zipEntries.increment();
+        zipBytes.increment(bytes);
+    }
+
+    /**
+     * @param start A ZIP export kezdetének időpontja (System.nanoTime()).
+     */
+    public void zipExported(long start) {
+        zipTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
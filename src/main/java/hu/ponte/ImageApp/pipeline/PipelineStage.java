@@ -0,0 +1,12 @@
+package hu.ponte.ImageApp.pipeline;
+
+/**
+ * A képfeltöltési folyamat lépései. Minden lépéshez külön konfigurálható,
+ * hogy egyszerre legfeljebb hány fájl lehet benne.
+ */
+public enum PipelineStage {
+    VALIDATE,
+    RESIZE,
+    ENCRYPT,
+    PERSIST
+}
@@ -0,0 +1,167 @@
+package hu.ponte.ImageApp.pipeline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Egy feltöltés fájljait párhuzamosan, lépésenként korlátozott párhuzamossággal dolgozza fel.
+ * A fájlok egy közös szálkészleten futnak, az egyes lépésekbe (validálás, átméretezés,
+ * titkosítás, mentés) való belépést pedig lépésenként egy-egy szemafor korlátozza.
+ * Lépésenként méri a várakozás ("image.pipeline.stage.wait") és a végrehajtás
+ * ("image.pipeline.stage") idejét. A feltöltés minden adatbázis-hozzáférése (a lekérdezések és
+ * a mentés is) egy közös, a kapcsolatkészlethez méretezett szemaforon halad át, így a feltöltések
+ * egyszerre legfeljebb ennyi kapcsolatot foglalhatnak le ("image.pipeline.database.wait").
+ */
+public class UploadPipeline {
+
+    private final ExecutorService executor;
+    private final Map<PipelineStage, Semaphore> stageLimits = new EnumMap<>(PipelineStage.class);
+    private final Map<PipelineStage, Timer> stageTimers = new EnumMap<>(PipelineStage.class);
+    private final Map<PipelineStage, Timer> waitTimers = new EnumMap<>(PipelineStage.class);
+    private final Semaphore databaseLimit;
+    private final Timer databaseWaitTimer;
+
+    /**
+     * @param executor    A feldolgozást végző szálkészlet.
+     * @param concurrency Lépésenként a megengedett párhuzamos feldolgozások száma.
+     */
+    public UploadPipeline(ExecutorService executor, Map<PipelineStage, Integer> concurrency) {
+        this(executor, concurrency, Integer.MAX_VALUE, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param executor            A feldolgozást végző szálkészlet.
+     * @param concurrency         Lépésenként a megengedett párhuzamos feldolgozások száma.
+     * @param databaseConcurrency Az egyszerre adatbázist használó feltöltési lépések legnagyobb száma.
+     * @param meterRegistry       A lépések mérőszámainak regisztere.
+     */
+    public UploadPipeline(ExecutorService executor, Map<PipelineStage, Integer> concurrency, int databaseConcurrency,
+                          MeterRegistry meterRegistry) {
+        if (databaseConcurrency < 1) {
+            throw new IllegalArgumentException("Az adatbázis-hozzáférés párhuzamossága legalább 1 kell legyen.");
+        }
+        this.executor = executor;
+        this.databaseLimit = new Semaphore(databaseConcurrency, true);
+        this.databaseWaitTimer = Timer.builder("image.pipeline.database.wait")
+                .description("Time spent waiting for a free database slot in the upload pipeline")
+                .register(meterRegistry);
+        for (PipelineStage stage : PipelineStage.values()) {
+            int permits = concurrency.getOrDefault(stage, Runtime.getRuntime().availableProcessors());
+            if (permits < 1) {
+                throw new IllegalArgumentException("A(z) " + stage + " lépés párhuzamossága legalább 1 kell legyen.");
+            }
+            stageLimits.put(stage, new Semaphore(permits));
+            String stageName = stage.name().toLowerCase();
+            stageTimers.put(stage, Timer.builder("image.pipeline.stage")
+                    .description("Time spent executing an upload pipeline stage")
+                    .tag("stage", stageName)
+                    .register(meterRegistry));
+            waitTimers.put(stage, Timer.builder("image.pipeline.stage.wait")
+                    .description("Time spent waiting for a free slot in an upload pipeline stage")
+                    .tag("stage", stageName)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Lefuttatja a feladatot a megadott lépés korlátján belül; ha a lépés telített,
+     * megvárja, amíg felszabadul egy hely.
+     *
+     * @param stage A lépés, amelyhez a feladat tartozik.
+     * @param task  A végrehajtandó feladat.
+     * @return A feladat eredménye.
+     * @throws Exception Ha a feladat hibát dob, vagy a várakozás megszakad.
+     */
+    public <T> T runStage(PipelineStage stage, Callable<T> task) throws Exception {
+        Semaphore limit = stageLimits.get(stage);
+        long waitStart = System.nanoTime();
+        limit.acquire();
+        long start = System.nanoTime();
+        waitTimers.get(stage).record(start - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            return task.call();
+        } finally {
+            stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            limit.release();
+        }
+    }
+
+    /**
+     * Lefuttatja az adatbázist használó feladatot az adatbázis-korláton belül; ha minden hely
+     * foglalt, megvárja, amíg felszabadul egy. A feladat nem hívhatja újra ezt a metódust.
+     *
+     * @param task A végrehajtandó feladat.
+     * @return A feladat eredménye.
+     * @throws Exception Ha a feladat hibát dob, vagy a várakozás megszakad.
+     */
+    public <T> T runWithDatabase(Callable<T> task) throws Exception {
+        long waitStart = System.nanoTime();
+        databaseLimit.acquire();
+        databaseWaitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            return task.call();
+        } finally {
+            databaseLimit.release();
+        }
+    }
+
+    /**
+     * Az összes elemet párhuzamosan feldolgozza, és az eredményeket a bemenet sorrendjében adja vissza.
+     * Hiba esetén is megvárja az összes elem befejeződését (hogy mindegyik feltakaríthasson maga után),
+     * majd a bemenet sorrendjében első hibát dobja tovább.
+     *
+     * @param items A feldolgozandó elemek.
+     * @param task  Az egy elemet feldolgozó feladat.
+     * @return Az eredmények a bemenettel azonos sorrendben.
+     * @throws Exception Az első sikertelen elem hibája.
+     */
+    public <I, O> List<O> processAll(List<I> items, ItemTask<I, O> task) throws Exception {
+        List<Future<O>> futures = new ArrayList<>(items.size());
+        for (I item : items) {
+            futures.add(executor.submit(() -> task.process(item)));
+        }
+
+        List<O> results = new ArrayList<>(items.size());
+        Exception failure = null;
+        try {
+            for (Future<O> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Egyetlen elemet feldolgozó feladat.
+     */
+    @FunctionalInterface
+    public interface ItemTask<I, O> {
+        O process(I item) throws Exception;
+    }
+}
@@ -0,0 +1,20 @@
+package hu.ponte.ImageApp.pipeline;
+
+/**
+ * Értesítést kap, amikor a feltöltés egy fájlja a feldolgozás következő lépésébe lép.
+ */
+@FunctionalInterface
+public interface UploadProgressListener {
+
+    /**
+     * Nem figyeli a feldolgozást.
+     */
+    UploadProgressListener NONE = (fileIndex, stage) -> {
+    };
+
+    /**
+     * @param fileIndex A fájl sorszáma a feltöltésen belül.
+     * @param stage     A lépés, amelybe a fájl lépett.
+     */
+    void onStage(int fileIndex, PipelineStage stage);
+}
@@ -0,0 +1,153 @@
+package hu.ponte.ImageApp.processor;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Egy hosszan futó képfeldolgozó folyamat "nyelve": hogyan kell elindítani, milyen sorokat
+ * kell a bemenetére írni egy feladathoz, és a kimenetéből hogyan ismerhető fel a feladat vége.
+ */
+public enum BatchDialect {
+
+    /**
+     * A {@code gm batch} mód: egyetlen GraphicsMagick folyamat, amely a standard bemenetről
+     * olvassa a parancsokat, és mindegyik után egy PASS/FAIL sort ír ki.
+     */
+    GRAPHICSMAGICK("GraphicsMagick") {
+        @Override
+        public List<String> command() {
+            return List.of("gm", "batch", "-echo", "off", "-feedback", "on",
+                    "-pass", PASS_MARKER, "-fail", FAIL_MARKER, "-");
+        }
+
+        @Override
+        public String resizeCommand(String inputPath, int width, int height, String outputPath, EncodingOptions options,
+                                    ProcessLimits limits) {
+            return "convert" + arguments(limits.graphicsMagickArguments(), this::quote)
+                    + " -size " + DecodeSizeHint.geometry(width, height) + " " + quote(inputPath) + " -resize " + width + "x" + height
+                    + encodingArguments(options, outputPath, List.of("+profile", "*"), this::quote) + " " + quote(outputPath);
+        }
+
+        @Override
+        public String pingCommand() {
+            return "version";
+        }
+
+        @Override
+        public Integer parseResult(String line) {
+            if (line.contains(PASS_MARKER)) {
+                return 0;
+            }
+            return line.contains(FAIL_MARKER) ? 1 : null;
+        }
+
+        private String quote(String value) {
+            return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    },
+
+    /**
+     * Az ImageMagick nem rendelkezik a {@code gm batch}-hez hasonló, a feladatokat egyetlen
+     * folyamatban végrehajtó móddal, ezért egy hosszan futó shellt használunk, amely a
+     * {@code magick} parancsokat futtatja, és mindegyik után kiírja a kilépési kódot. A shell
+     * feladatonként továbbra is elindít egy {@code magick} folyamatot; a JVM-nek viszont nem
+     * kell folyamatot indítania (és a pipe-okat kezelnie), csak egy sort írni a shell bemenetére.
+     * A {@code magick} hibakimenete a shellén keresztül a sikertelen feladat hibaüzenetébe kerül.
+     */
+    IMAGEMAGICK("ImageMagick") {
+        @Override
+        public List<String> command() {
+            return List.of("sh");
+        }
+
+        @Override
+        public String resizeCommand(String inputPath, int width, int height, String outputPath, EncodingOptions options,
+                                    ProcessLimits limits) {
+            return "magick" + arguments(limits.imageMagickArguments(), this::quote) + " -define jpeg:size=" + DecodeSizeHint.geometry(width, height) + " " + quote(inputPath)
+                    + " -resize " + width + "x" + height + encodingArguments(options, outputPath, List.of("-strip"), this::quote)
+                    + " " + quote(outputPath)
+                    + " >/dev/null; echo \"" + DONE_MARKER + "$?\"";
+        }
+
+        @Override
+        public String pingCommand() {
+            return "echo \"" + DONE_MARKER + "0\"";
+        }
+
+        @Override
+        public Integer parseResult(String line) {
+            int index = line.indexOf(DONE_MARKER);
+            if (index < 0) {
+                return null;
+            }
+            return Integer.parseInt(line.substring(index + DONE_MARKER.length()).trim());
+        }
+
+        private String quote(String value) {
+            return "'" + value.replace("'", "'\\''") + "'";
+        }
+    };
+
+    /**
+     * A kódolási beállítások kapcsolói szóközzel kezdve, a parancssorba illeszthető alakban.
+     */
+    private static String encodingArguments(EncodingOptions options, String outputPath, List<String> stripArguments,
+                                            UnaryOperator<String> quote) {
+        String outputFormat = options.outputFormat(outputPath.substring(outputPath.lastIndexOf('.') + 1));
+        return arguments(options.magickArguments(outputFormat, stripArguments), quote);
+    }
+
+    /**
+     * A kapcsolók szóközzel kezdve, idézve, a parancssorba illeszthető alakban.
+     */
+    private static String arguments(List<String> arguments, UnaryOperator<String> quote) {
+        StringBuilder line = new StringBuilder();
+        for (String argument : arguments) {
+            line.append(' ').append(quote.apply(argument));
+        }
+        return line.toString();
+    }
+
+    private static final String PASS_MARKER = "__IMAGEAPP_PASS__";
+    private static final String FAIL_MARKER = "__IMAGEAPP_FAIL__";
+    private static final String DONE_MARKER = "__IMAGEAPP_DONE__";
+
+    private final String toolName;
+
+    BatchDialect(String toolName) {
+        this.toolName = toolName;
+    }
+
+    /**
+     * @return Az eszköz neve hibaüzenetekhez.
+     */
+    public String toolName() {
+        return toolName;
+    }
+
+    /**
+     * @return A hosszan futó folyamat indítóparancsa.
+     */
+    public abstract List<String> command();
+
+    /**
+     * @param limits A feladat erőforrás-korlátai, az egyszer futó eszközökkel azonos {@code -limit} kapcsolókkal.
+     * @return Az átméretezési feladat egy sorban, a folyamat bemenetére írható formában. A kimenet
+     * formátumát a kimeneti fájl kiterjesztése határozza meg.
+     */
+    public abstract String resizeCommand(String inputPath, int width, int height, String outputPath, EncodingOptions options,
+                                         ProcessLimits limits);
+
+    /**
+     * @return Egy mellékhatás nélküli parancs, amellyel a folyamat állapota ellenőrizhető.
+     */
+    public abstract String pingCommand();
+
+    /**
+     * Értelmezi a folyamat egy kimeneti sorát.
+     *
+     * @param line A kimenet egy sora.
+     * @return A feladat kilépési kódja, ha a sor a feladat végét jelzi, különben null.
+     */
+    public abstract Integer parseResult(String line);
+}
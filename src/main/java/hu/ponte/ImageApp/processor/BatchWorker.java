@@ -0,0 +1,187 @@
+package hu.ponte.ImageApp.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Egy hosszan futó képfeldolgozó folyamat, amely a standard bemenetén kapja a feladatokat.
+ * A kimenetét egy külön szál olvassa, így a feladatok időkorláttal várhatók meg; a hibakimenet
+ * végét egy másik szál gyűjti, és a sikertelen feladat hibaüzenetébe kerül. Ha a folyamat
+ * leáll, a worker használhatatlanná válik, és minden további feladat
+ * {@link ProcessUnavailableException} kivétellel zárul. Egyszerre csak egy szál használhatja.
+ */
+class BatchWorker implements AutoCloseable {
+
+    private static final String EOF_LINE = "\u0000EOF";
+    private static final int MAX_ERROR_OUTPUT = 4096;
+
+    private final BatchDialect dialect;
+    private final Process process;
+    private final Writer input;
+    private final BlockingQueue<String> outputLines = new LinkedBlockingQueue<>();
+    private final StringBuilder errorOutput = new StringBuilder();
+    private volatile boolean terminated;
+    private int completedJobs;
+    private long lastUsedNanos = System.nanoTime();
+
+    BatchWorker(BatchDialect dialect) throws IOException {
+        this.dialect = dialect;
+        try {
+            this.process = new ProcessBuilder(dialect.command()).start();
+        } catch (IOException e) {
+            throw new ProcessUnavailableException(dialect.toolName() + " worker could not be started: " + e.getMessage(), e);
+        }
+        this.input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+
+        startDaemon(dialect.toolName() + "-worker-" + process.pid(), this::readOutput);
+        startDaemon(dialect.toolName() + "-worker-stderr-" + process.pid(), this::readErrors);
+    }
+
+    /**
+     * Végrehajt egy parancsot, és megvárja az eredményét.
+     *
+     * @param command       A végrehajtandó parancs.
+     * @param timeoutMillis A maximális várakozási idő.
+     * @return A parancs kilépési kódja.
+     * @throws IOException          Ha a folyamat leállt, vagy nem válaszolt időben ({@link ProcessUnavailableException}).
+     * @throws InterruptedException Ha a várakozás megszakad.
+     */
+    int execute(String command, long timeoutMillis) throws IOException, InterruptedException {
+        // Az előző feladat után érkezett sorok közül csak a leállás jelzése számít
+        String stale;
+        while ((stale = outputLines.poll()) != null) {
+            if (EOF_LINE.equals(stale)) {
+                terminated = true;
+            }
+        }
+        if (terminated) {
+            throw terminated();
+        }
+        synchronized (errorOutput) {
+            errorOutput.setLength(0);
+        }
+        try {
+            input.write(command);
+            input.write('\n');
+            input.flush();
+        } catch (IOException e) {
+            // A leállt folyamat bemenete lezárult
+            terminated = true;
+            throw terminated();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            String line = remaining > 0 ? outputLines.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (line == null) {
+                throw new ProcessUnavailableException(dialect.toolName() + " worker did not respond within " + timeoutMillis + " ms");
+            }
+            if (EOF_LINE.equals(line)) {
+                terminated = true;
+                throw terminated();
+            }
+            Integer exitCode = dialect.parseResult(line);
+            if (exitCode != null) {
+                completedJobs++;
+                lastUsedNanos = System.nanoTime();
+                return exitCode;
+            }
+        }
+    }
+
+    /**
+     * @return Az utolsó feladat óta a hibakimenetre írt szöveg vége (legfeljebb 4096 karakter).
+     */
+    String errorOutput() {
+        synchronized (errorOutput) {
+            return errorOutput.toString().trim();
+        }
+    }
+
+    /**
+     * @return true, ha a folyamat még fut.
+     */
+    boolean isAlive() {
+        return !terminated && process.isAlive();
+    }
+
+    int completedJobs() {
+        return completedJobs;
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastUsedNanos;
+    }
+
+    private void readOutput() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                outputLines.add(line);
+            }
+        } catch (IOException ignored) {
+            // A folyamat leállításakor a stream lezárul
+        }
+        outputLines.add(EOF_LINE);
+    }
+
+    private void readErrors() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                synchronized (errorOutput) {
+                    errorOutput.append(line).append('\n');
+                    if (errorOutput.length() > MAX_ERROR_OUTPUT) {
+                        errorOutput.delete(0, errorOutput.length() - MAX_ERROR_OUTPUT);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // A folyamat leállításakor a stream lezárul
+        }
+    }
+
+    private ProcessUnavailableException terminated() {
+        String details = errorOutput();
+        return new ProcessUnavailableException(dialect.toolName() + " worker terminated unexpectedly"
+                + (details.isEmpty() ? "" : ": " + details));
+    }
+
+    private static void startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Leállítja a folyamatot. A leszármazottakat (pl. az ImageMagick shellje által indított, még futó
+     * {@code magick} folyamatot) a szülő előtt állítjuk le, mert annak leállása után már nem tartoznak
+     * hozzá, és árván tovább futnának.
+     */
+    @Override
+    public void close() {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // A folyamatot mindenképp leállítjuk
+        }
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroy();
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package hu.ponte.ImageApp.processor;
+
+/**
+ * Csökkentett méretű dekódolás a JPEG bemenetekhez. Ha a célméret jóval kisebb a forrásnál,
+ * a JPEG dekóder a DCT együtthatókból közvetlenül 1/2, 1/4 vagy 1/8 méretű képet állít elő,
+ * így a teljes felbontású kép sosem kerül a memóriába. A dekódolt kép a célméret kétszereséig
+ * csökkenhet, hogy az ezt követő átméretezés minősége ne romoljon.
+ */
+final class DecodeSizeHint {
+
+    /**
+     * A dekódolt kép legalább ennyiszerese a célméretnek.
+     */
+    static final int FACTOR = 2;
+
+    private DecodeSizeHint() {
+    }
+
+    /**
+     * @return A dekóder számára megadható legkisebb méret "SZÉLESSÉGxMAGASSÁG" formában.
+     */
+    static String geometry(int width, int height) {
+        return (width * FACTOR) + "x" + (height * FACTOR);
+    }
+
+    /**
+     * Kiszámítja, hogy a forráskép minden hányadik képpontját elég beolvasni ahhoz, hogy a
+     * beolvasott kép az oldalarány megtartásával a célméretbe illesztve is legalább a célméret
+     * kétszerese maradjon.
+     *
+     * @return A mintavételezési lépésköz; 1, ha nincs lehetőség csökkentésre.
+     */
+    static int subsampling(int sourceWidth, int sourceHeight, int width, int height) {
+        double scale = Math.min((double) width / sourceWidth, (double) height / sourceHeight);
+        if (scale <= 0) {
+            return 1;
+        }
+        return Math.max(1, (int) Math.floor(1 / (scale * FACTOR)));
+    }
+}
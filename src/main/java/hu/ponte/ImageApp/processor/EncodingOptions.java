@@ -0,0 +1,140 @@
+package hu.ponte.ImageApp.processor;
+
+import hu.ponte.ImageApp.util.ErrorMessages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Az átméretezett kép kódolásának beállításai. A null értékű mezők az eszköz saját
+ * alapértelmezését jelentik, így a {@link #DEFAULTS} a korábbi, csak {@code -resize WxH}
+ * paraméterű viselkedésnek felel meg.
+ *
+ * @param quality             A JPEG/WebP minőség 1 és 100 között.
+ * @param stripMetadata       Ha true, a kimenetből kimaradnak a metaadatok (EXIF, ICC profil, beágyazott előnézet).
+ * @param progressive         Ha true, a JPEG kimenet progresszív.
+ * @param pngCompressionLevel A PNG tömörítési szintje 0 és 9 között.
+ * @param format              A kimenet formátuma (pl. "webp"); null esetén a bemenet formátuma.
+ */
+public record EncodingOptions(Integer quality, boolean stripMetadata, boolean progressive,
+                              Integer pngCompressionLevel, String format) {
+
+    /**
+     * Az eszközök alapértelmezett kódolása, metaadatok megtartásával és formátumváltás nélkül.
+     */
+    public static final EncodingOptions DEFAULTS = new EncodingOptions(null, false, false, null, null);
+
+    public EncodingOptions {
+        if (quality != null && (quality < 1 || quality > 100)) {
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ENCODING_QUALITY);
+        }
+        if (pngCompressionLevel != null && (pngCompressionLevel < 0 || pngCompressionLevel > 9)) {
+            throw new IllegalArgumentException(ErrorMessages.INVALID_PNG_COMPRESSION_LEVEL);
+        }
+        format = format == null || format.isBlank() ? null : normalizeFormat(format);
+        if (format != null && !format.matches("[a-z0-9]+")) {
+            throw new IllegalArgumentException(ErrorMessages.UNSUPPORTED_OUTPUT_FORMAT + format);
+        }
+    }
+
+    /**
+     * Egy kérés beállításai ezen alapértelmezések felett. A null paraméterek az alapértelmezett értéket hagyják meg.
+     *
+     * @return Az összevont beállítások.
+     */
+    public EncodingOptions overriddenBy(Integer quality, Boolean stripMetadata, Boolean progressive,
+                                        Integer pngCompressionLevel, String format) {
+        return new EncodingOptions(
+                quality != null ? quality : this.quality,
+                stripMetadata != null ? stripMetadata : this.stripMetadata,
+                progressive != null ? progressive : this.progressive,
+                pngCompressionLevel != null ? pngCompressionLevel : this.pngCompressionLevel,
+                format != null && !format.isBlank() ? format : this.format);
+    }
+
+    /**
+     * @param sourceFormat A bemenet formátuma.
+     * @return A kimenet formátuma: a beállított formátum, ennek hiányában a bemenet formátuma.
+     */
+    public String outputFormat(String sourceFormat) {
+        return format != null ? format : normalizeFormat(sourceFormat);
+    }
+
+    /**
+     * A beállítások egyértelmű szöveges alakja. Ugyanabból a bemenetből két kódolás pontosan
+     * akkor ad azonos kimenetet, ha az alakjuk megegyezik; az átméretezési eredmények
+     * nyilvántartása ezzel különbözteti meg a különböző kódolásokat.
+     *
+     * @return A beállítások szöveges alakja (pl. "webp;q=80;strip"; formátumváltás nélkül "source;...").
+     */
+    public String signature() {
+        StringBuilder signature = new StringBuilder(format != null ? format : "source");
+        if (quality != null) {
+            signature.append(";q=").append(quality);
+        }
+        if (stripMetadata) {
+            signature.append(";strip");
+        }
+        if (progressive) {
+            signature.append(";progressive");
+        }
+        if (pngCompressionLevel != null) {
+            signature.append(";png=").append(pngCompressionLevel);
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @param format Egy képformátum neve (pl. "png", "jpeg", "webp").
+     * @return A formátum MIME típusa.
+     */
+    public static String mimeType(String format) {
+        return "image/" + normalizeFormat(format);
+    }
+
+    /**
+     * @param mimeType Egy kép MIME típusa (pl. "image/webp").
+     * @return A formátum neve, vagy null, ha a típus nem kép.
+     */
+    public static String formatOfMimeType(String mimeType) {
+        if (mimeType == null || !mimeType.startsWith("image/")) {
+            return null;
+        }
+        return normalizeFormat(mimeType.substring("image/".length()));
+    }
+
+    /**
+     * A GraphicsMagick és az ImageMagick közös parancssori kapcsolói a beállításokhoz,
+     * a {@code -resize} után, a kimenet előtt megadva.
+     *
+     * @param outputFormat A kimenet formátuma.
+     * @param stripArguments A metaadatok eltávolításának kapcsolói az adott eszközben.
+     */
+    List<String> magickArguments(String outputFormat, List<String> stripArguments) {
+        List<String> arguments = new ArrayList<>();
+        if (stripMetadata) {
+            arguments.addAll(stripArguments);
+        }
+        if ("png".equals(outputFormat)) {
+            if (pngCompressionLevel != null) {
+                // PNG esetén a -quality tízes helyiértéke a zlib szint, az egyes az adaptív szűrő
+                arguments.add("-quality");
+                arguments.add(String.valueOf(pngCompressionLevel * 10 + 5));
+            }
+        } else if (quality != null) {
+            arguments.add("-quality");
+            arguments.add(String.valueOf(quality));
+        }
+        if (progressive && "jpeg".equals(outputFormat)) {
+            arguments.add("-interlace");
+            arguments.add("Line");
+        }
+        return arguments;
+    }
+
+    private static String normalizeFormat(String format) {
+        String normalized = format.trim().toLowerCase(Locale.ROOT);
+        return "jpg".equals(normalized) ? "jpeg" : normalized;
+    }
+}
@@ -0,0 +1,49 @@
+package hu.ponte.ImageApp.processor;
+
+/**
+ * Egy külső képfeldolgozó folyamat nem nulla kilépési kóddal fejeződött be, vagy túllépte
+ * a megengedett futásidőt, és leállítottuk.
+ */
+public class ExternalProcessException extends RuntimeException {
+
+    /**
+     * Az időtúllépés miatt leállított folyamatok kilépési kódja.
+     */
+    public static final int TIMED_OUT = -1;
+
+    private final String toolName;
+    private final int exitCode;
+
+    public ExternalProcessException(String toolName, int exitCode, String details) {
+        this(toolName + " process failed with exit code " + exitCode, toolName, exitCode, details);
+    }
+
+    private ExternalProcessException(String message, String toolName, int exitCode, String details) {
+        super(message + (details == null || details.isEmpty() ? "" : ": " + details));
+        this.toolName = toolName;
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * @param toolName      A futtatott eszköz neve.
+     * @param timeoutMillis A túllépett futásidő.
+     * @param details       A folyamat addigi hibakimenete.
+     * @return Az időtúllépést jelző kivétel ({@link #TIMED_OUT} kilépési kóddal).
+     */
+    public static ExternalProcessException timedOut(String toolName, long timeoutMillis, String details) {
+        return new ExternalProcessException(toolName + " process killed after " + timeoutMillis + " ms",
+                toolName, TIMED_OUT, details);
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isTimedOut() {
+        return exitCode == TIMED_OUT;
+    }
+}
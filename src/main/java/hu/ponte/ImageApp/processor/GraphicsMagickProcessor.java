@@ -2,13 +2,51 @@ package hu.ponte.ImageApp.processor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A GraphicsMagickProcessor osztály a GraphicsMagick eszközt használja a képek átméretezésére.
  * Az ImageProcessor interfészt implementálja, és egy konkrét megvalósítást biztosít a GraphicsMagick számára.
+ * A bemenet előtt megadott {@code -size} a JPEG dekódert csökkentett méretű dekódolásra utasítja
+ * (lásd {@link DecodeSizeHint}); más formátumoknál hatástalan.
+ * A folyamatokat a közös {@link ProcessExecutor} futtatja (párhuzamossági és futásidő-korláttal),
+ * a {@link ProcessLimits} pedig {@code -limit} kapcsolókkal korlátozza a memória- és szálhasználatukat.
  */
 public class GraphicsMagickProcessor implements ImageProcessor {
 
+    /**
+     * A metaadatok (EXIF, ICC profil, beágyazott előnézet) eltávolításának kapcsolói.
+     */
+    private static final List<String> STRIP_ARGUMENTS = List.of("+profile", "*");
+
+    /**
+     * Az eszköz által írható formátumok, az első olyan kérésnél lekérdezve, amely nem PNG vagy JPEG kimenetet kér.
+     */
+    private volatile Set<String> writableFormats;
+
+    private final ProcessExecutor processExecutor;
+    private final ProcessLimits limits;
+
+    /**
+     * Saját, alapértelmezett korlátú folyamatfuttatóval és erőforrás-korlátok nélkül.
+     */
+    public GraphicsMagickProcessor() {
+        this(ProcessExecutor.withDefaults(), ProcessLimits.NONE);
+    }
+
+    /**
+     * @param processExecutor A folyamatokat futtató, a párhuzamosságukat korlátozó közös futtató.
+     * @param limits          A folyamatok erőforrás-korlátai.
+     */
+    public GraphicsMagickProcessor(ProcessExecutor processExecutor, ProcessLimits limits) {
+        this.processExecutor = processExecutor;
+        this.limits = limits;
+    }
+
     /**
      * Átméretezi a megadott képet a megadott szélességre és magasságra a GraphicsMagick eszköz segítségével.
      *
@@ -22,12 +60,49 @@ public class GraphicsMagickProcessor implements ImageProcessor {
      */
     @Override
     public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder("gm", "convert", inputFile.getAbsolutePath(), "-resize", width + "x" + height, outputFilePath);
-        Process process = processBuilder.start();
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("GraphicsMagick process failed with exit code " + exitCode);
-        }
+        List<String> command = new ArrayList<>(List.of("gm", "convert"));
+        command.addAll(limits.graphicsMagickArguments());
+        command.addAll(List.of("-size", DecodeSizeHint.geometry(width, height), inputFile.getAbsolutePath(),
+                "-resize", width + "x" + height, outputFilePath));
+        processExecutor.run("GraphicsMagick", command);
         return new File(outputFilePath);
     }
+
+    /**
+     * Átméretezi a képet a GraphicsMagick eszközzel úgy, hogy a bemenetet a folyamat standard bemenetére írja,
+     * az eredményt pedig a standard kimenetéről olvassa, ideiglenes fájlok nélkül.
+     *
+     * @param input   A bemeneti kép tartalma.
+     * @param output  A kimenet, ahová az átméretezett kép kerül.
+     * @param width   A kívánt szélesség pixelben.
+     * @param height  A kívánt magasság pixelben.
+     * @param format  A bemenet formátuma ("png" vagy "jpeg").
+     * @param options A kimenet kódolási beállításai.
+     * @throws IOException          Ha hiba történik a stream olvasása vagy írása során.
+     * @throws InterruptedException Ha a képátméretezési folyamat megszakad.
+     */
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException, InterruptedException {
+        String outputFormat = options.outputFormat(format);
+        List<String> command = new ArrayList<>(List.of("gm", "convert"));
+        command.addAll(limits.graphicsMagickArguments());
+        command.addAll(List.of("-size", DecodeSizeHint.geometry(width, height), "-", "-resize", width + "x" + height));
+        command.addAll(options.magickArguments(outputFormat, STRIP_ARGUMENTS));
+        command.add(outputFormat + ":-");
+        processExecutor.pipe("GraphicsMagick", command, input, output);
+    }
+
+    @Override
+    public boolean supportsOutputFormat(String format) {
+        if (ImageProcessor.super.supportsOutputFormat(format)) {
+            return true;
+        }
+        Set<String> formats = writableFormats;
+        if (formats == null) {
+            formats = ToolAvailability.writableFormats("gm", "convert", "-list", "format");
+            writableFormats = formats;
+        }
+        return formats.contains(format);
+    }
 }
@@ -2,13 +2,51 @@ package hu.ponte.ImageApp.processor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Az ImageMagickProcessor osztály az ImageMagick eszközt használja a képek átméretezésére.
  * Az ImageProcessor interfészt implementálja, és egy konkrét megvalósítást biztosít az ImageMagick számára.
+ * A bemenet előtt megadott {@code -define jpeg:size=} a JPEG dekódert csökkentett méretű dekódolásra
+ * utasítja (lásd {@link DecodeSizeHint}); más formátumoknál hatástalan.
+ * A folyamatokat a közös {@link ProcessExecutor} futtatja (párhuzamossági és futásidő-korláttal),
+ * a {@link ProcessLimits} pedig {@code -limit} kapcsolókkal korlátozza a memória- és szálhasználatukat.
  */
 public class ImageMagickProcessor implements ImageProcessor {
 
+    /**
+     * A metaadatok (EXIF, ICC profil, beágyazott előnézet) eltávolításának kapcsolói.
+     */
+    private static final List<String> STRIP_ARGUMENTS = List.of("-strip");
+
+    /**
+     * Az eszköz által írható formátumok, az első olyan kérésnél lekérdezve, amely nem PNG vagy JPEG kimenetet kér.
+     */
+    private volatile Set<String> writableFormats;
+
+    private final ProcessExecutor processExecutor;
+    private final ProcessLimits limits;
+
+    /**
+     * Saját, alapértelmezett korlátú folyamatfuttatóval és erőforrás-korlátok nélkül.
+     */
+    public ImageMagickProcessor() {
+        this(ProcessExecutor.withDefaults(), ProcessLimits.NONE);
+    }
+
+    /**
+     * @param processExecutor A folyamatokat futtató, a párhuzamosságukat korlátozó közös futtató.
+     * @param limits          A folyamatok erőforrás-korlátai.
+     */
+    public ImageMagickProcessor(ProcessExecutor processExecutor, ProcessLimits limits) {
+        this.processExecutor = processExecutor;
+        this.limits = limits;
+    }
+
     /**
      * Átméretezi a megadott képet a megadott szélességre és magasságra az ImageMagick eszköz segítségével.
      *
@@ -22,12 +60,49 @@ public class ImageMagickProcessor implements ImageProcessor {
      */
     @Override
     public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder("magick", inputFile.getAbsolutePath(), "-resize", width + "x" + height, outputFilePath);
-        Process process = processBuilder.start();
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("ImageMagick process failed with exit code " + exitCode);
-        }
+        List<String> command = new ArrayList<>(List.of("magick"));
+        command.addAll(limits.imageMagickArguments());
+        command.addAll(List.of("-define", "jpeg:size=" + DecodeSizeHint.geometry(width, height), inputFile.getAbsolutePath(),
+                "-resize", width + "x" + height, outputFilePath));
+        processExecutor.run("ImageMagick", command);
         return new File(outputFilePath);
     }
+
+    /**
+     * Átméretezi a képet a ImageMagick eszközzel úgy, hogy a bemenetet a folyamat standard bemenetére írja,
+     * az eredményt pedig a standard kimenetéről olvassa, ideiglenes fájlok nélkül.
+     *
+     * @param input   A bemeneti kép tartalma.
+     * @param output  A kimenet, ahová az átméretezett kép kerül.
+     * @param width   A kívánt szélesség pixelben.
+     * @param height  A kívánt magasság pixelben.
+     * @param format  A bemenet formátuma ("png" vagy "jpeg").
+     * @param options A kimenet kódolási beállításai.
+     * @throws IOException          Ha hiba történik a stream olvasása vagy írása során.
+     * @throws InterruptedException Ha a képátméretezési folyamat megszakad.
+     */
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException, InterruptedException {
+        String outputFormat = options.outputFormat(format);
+        List<String> command = new ArrayList<>(List.of("magick"));
+        command.addAll(limits.imageMagickArguments());
+        command.addAll(List.of("-define", "jpeg:size=" + DecodeSizeHint.geometry(width, height), "-", "-resize", width + "x" + height));
+        command.addAll(options.magickArguments(outputFormat, STRIP_ARGUMENTS));
+        command.add(outputFormat + ":-");
+        processExecutor.pipe("ImageMagick", command, input, output);
+    }
+
+    @Override
+    public boolean supportsOutputFormat(String format) {
+        if (ImageProcessor.super.supportsOutputFormat(format)) {
+            return true;
+        }
+        Set<String> formats = writableFormats;
+        if (formats == null) {
+            formats = ToolAvailability.writableFormats("magick", "-list", "format");
+            writableFormats = formats;
+        }
+        return formats.contains(format);
+    }
 }
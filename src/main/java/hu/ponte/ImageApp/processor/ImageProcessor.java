@@ -2,6 +2,11 @@ package hu.ponte.ImageApp.processor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Az ImageProcessor interfész meghatározza a képkezelő funkciókat, mint például
@@ -23,4 +28,61 @@ public interface ImageProcessor {
      * @throws InterruptedException Ha a képátméretezési folyamat megszakad.
      */
     File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException;
+
+    /**
+     * Átméretezi a bemeneti streamből olvasott képet, és az eredményt a kimeneti streamre írja,
+     * az eszköz alapértelmezett kódolásával.
+     * A streameket a metódus nem zárja le.
+     *
+     * @param input  A bemeneti kép tartalma.
+     * @param output A kimenet, ahová az átméretezett kép kerül.
+     * @param width  A kívánt szélesség pixelben.
+     * @param height A kívánt magasság pixelben.
+     * @param format A kimeneti formátum ("png" vagy "jpeg").
+     * @throws IOException          Ha hiba történik a stream olvasása vagy írása során.
+     * @throws InterruptedException Ha a képátméretezési folyamat megszakad.
+     */
+    default void resizeImage(InputStream input, OutputStream output, int width, int height, String format) throws IOException, InterruptedException {
+        resizeImage(input, output, width, height, format, EncodingOptions.DEFAULTS);
+    }
+
+    /**
+     * Átméretezi a bemeneti streamből olvasott képet a megadott kódolási beállításokkal, és az
+     * eredményt a kimeneti streamre írja. Az alapértelmezett megvalósítás egyedi nevű ideiglenes
+     * fájlokon keresztül a fájl alapú változatot hívja, így a beállítások közül csak a kimenet
+     * formátumát (a kimeneti fájl kiterjesztésén keresztül) veszi figyelembe; a streamelést és a
+     * kódolási beállításokat közvetlenül támogató processzorok felülírják.
+     * A streameket a metódus nem zárja le.
+     *
+     * @param input   A bemeneti kép tartalma.
+     * @param output  A kimenet, ahová az átméretezett kép kerül.
+     * @param width   A kívánt szélesség pixelben.
+     * @param height  A kívánt magasság pixelben.
+     * @param format  A bemenet formátuma ("png" vagy "jpeg"); a kimenet is ilyen, ha a beállítások mást nem írnak elő.
+     * @param options A kimenet kódolási beállításai.
+     * @throws IOException          Ha hiba történik a stream olvasása vagy írása során.
+     * @throws InterruptedException Ha a képátméretezési folyamat megszakad.
+     */
+    default void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                             EncodingOptions options) throws IOException, InterruptedException {
+        Path inputFile = Files.createTempFile("imageapp-", "." + format);
+        Path outputFile = Files.createTempFile("imageapp-resized-", "." + options.outputFormat(format));
+        try {
+            Files.copy(input, inputFile, StandardCopyOption.REPLACE_EXISTING);
+            resizeImage(inputFile.toFile(), width, height, outputFile.toString());
+            Files.copy(outputFile, output);
+        } finally {
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    /**
+     * @param format Egy képformátum neve (pl. "webp").
+     * @return true, ha a processzor ilyen formátumú kimenetet tud előállítani. A PNG és a JPEG
+     * kimenetet minden processzor támogatja.
+     */
+    default boolean supportsOutputFormat(String format) {
+        return "png".equals(format) || "jpeg".equals(format);
+    }
 }
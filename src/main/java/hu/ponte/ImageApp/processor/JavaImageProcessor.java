@@ -0,0 +1,217 @@
+package hu.ponte.ImageApp.processor;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * A JavaImageProcessor osztály külső eszköz nélkül, a JVM-en belül (Java2D/ImageIO) méretezi át a képeket.
+ * Kicsinyítéskor több lépésben, lépésenként legfeljebb a felére csökkenti a képet, így a
+ * bilineáris interpoláció sem veszít részletet; az utolsó lépés bikubikus.
+ * A kép a GraphicsMagick/ImageMagick {@code -resize WxH} viselkedéséhez hasonlóan, az oldalarány
+ * megtartásával kerül a megadott méretbe. Ha a célméret jóval kisebb a forrásnál, az olvasó csak minden
+ * n-edik képpontot tárolja el (lásd {@link DecodeSizeHint}), így a teljes felbontású kép nem kerül a memóriába.
+ */
+public class JavaImageProcessor implements ImageProcessor {
+
+    private final float jpegQuality;
+
+    /**
+     * @param jpegQuality A JPEG kimenet minősége 0 és 1 között.
+     */
+    public JavaImageProcessor(float jpegQuality) {
+        if (jpegQuality <= 0 || jpegQuality > 1) {
+            throw new IllegalArgumentException("A JPEG minőség 0 és 1 közötti érték kell legyen.");
+        }
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Átméretezi a megadott képet a megadott szélességre és magasságra a JVM-en belül.
+     * A kimenet formátumát a kimeneti fájl kiterjesztése, ennek hiányában a bemenet formátuma határozza meg.
+     *
+     * @param inputFile      A bemeneti kép fájlja.
+     * @param width          A kívánt szélesség pixelben.
+     * @param height         A kívánt magasság pixelben.
+     * @param outputFilePath Az átméretezett kép kimeneti fájl elérési útja.
+     * @return A kimeneti fájl, amely az átméretezett képet tartalmazza.
+     * @throws IOException Ha a kép nem olvasható, vagy a kimenet nem írható.
+     */
+    @Override
+    public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(inputFile)) {
+            if (input == null) {
+                throw new IOException("Unsupported image format: " + inputFile.getName());
+            }
+            File outputFile = new File(outputFilePath);
+            outputFile.delete();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(outputFile)) {
+                resize(input, output, width, height, outputFilePath, EncodingOptions.DEFAULTS);
+            }
+            return outputFile;
+        }
+    }
+
+    /**
+     * Átméretezi a bemeneti streamből olvasott képet a JVM-en belül, memóriabeli pufferekkel,
+     * ideiglenes fájlok nélkül. Az ImageIO metaadatok nélkül írja a kimenetet, így a
+     * metaadatok eltávolítása minden esetben megtörténik.
+     *
+     * @param input   A bemeneti kép tartalma.
+     * @param output  A kimenet, ahová az átméretezett kép kerül.
+     * @param width   A kívánt szélesség pixelben.
+     * @param height  A kívánt magasság pixelben.
+     * @param format  A bemenet formátuma ("png" vagy "jpeg").
+     * @param options A kimenet kódolási beállításai.
+     * @throws IOException Ha a kép nem olvasható, vagy a kimenet nem írható.
+     */
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException {
+        try (ImageInputStream imageInput = new MemoryCacheImageInputStream(input);
+             ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            resize(imageInput, imageOutput, width, height, "." + options.outputFormat(format), options);
+        }
+    }
+
+    /**
+     * @return true, ha a formátumhoz van ImageIO író (a JDK csak PNG, JPEG, GIF, BMP és TIFF írót tartalmaz).
+     */
+    @Override
+    public boolean supportsOutputFormat(String format) {
+        return ImageIO.getImageWritersByFormatName(format).hasNext();
+    }
+
+    private void resize(ImageInputStream input, ImageOutputStream output, int width, int height, String outputName,
+                        EncodingOptions options) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        String inputFormat;
+        BufferedImage source;
+        try {
+            reader.setInput(input, true, true);
+            inputFormat = reader.getFormatName();
+            source = reader.read(0, readParam(reader, width, height));
+        } finally {
+            reader.dispose();
+        }
+
+        String format = outputFormat(outputName, inputFormat);
+        BufferedImage resized = resize(source, width, height, !isJpeg(format) && source.getColorModel().hasAlpha());
+        write(resized, format, output, options);
+    }
+
+    /**
+     * Olvasási paraméterek, amelyek JPEG bemenetnél a kép fejléce alapján a célmérethez illő
+     * mintavételezést állítanak be. A többi formátum (pl. PNG) dekódere a kihagyott képpontokat is
+     * kicsomagolja, így ott a mintavételezés nem takarít meg munkát, csak élesebb (aliasos) képet ad.
+     */
+    static ImageReadParam readParam(ImageReader reader, int width, int height) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (!isJpeg(reader.getFormatName().toLowerCase(Locale.ROOT))) {
+            return param;
+        }
+        int step = DecodeSizeHint.subsampling(reader.getWidth(0), reader.getHeight(0), width, height);
+        if (step > 1) {
+            param.setSourceSubsampling(step, step, 0, 0);
+        }
+        return param;
+    }
+
+    /**
+     * Az oldalarány megtartásával a megadott méretbe illeszti a képet.
+     */
+    static BufferedImage resize(BufferedImage source, int width, int height, boolean keepAlpha) {
+        double scale = Math.min((double) width / source.getWidth(), (double) height / source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        int imageType = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        // Fokozatos kicsinyítés: amíg a cél a felénél kisebb, felezünk
+        while (currentWidth / 2 >= targetWidth && currentHeight / 2 >= targetHeight) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, currentWidth, currentHeight, imageType, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        return draw(current, targetWidth, targetHeight, imageType, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int imageType, Object interpolation) {
+        BufferedImage target = new BufferedImage(width, height, imageType);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, String format, ImageOutputStream output, EncodingOptions options) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer available for format: " + format);
+        }
+        ImageWriter writer = writers.next();
+        try {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (isJpeg(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(options.quality() != null ? options.quality() / 100f : jpegQuality);
+                if (options.progressive()) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                }
+            } else if ("png".equals(format) && options.pngCompressionLevel() != null && param.canWriteCompressed()) {
+                // A PNG író a minőségből képzi a deflate szintet ((int) (9 * (1 - minőség))); a fél lépésnyi
+                // eltolás miatt a lebegőpontos kerekítés nem vihet egy szinttel lejjebb
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(0f, 1f - (options.pngCompressionLevel() + 0.5f) / 9f));
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String outputFormat(String outputName, String inputFormat) {
+        int dotIndex = outputName.lastIndexOf('.');
+        String extension = dotIndex >= 0 ? outputName.substring(dotIndex + 1).toLowerCase(Locale.ROOT) : "";
+        if ("png".equals(extension)) {
+            return "png";
+        } else if ("jpg".equals(extension) || "jpeg".equals(extension)) {
+            return "jpeg";
+        }
+        return inputFormat.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isJpeg(String format) {
+        return "jpeg".equals(format) || "jpg".equals(format);
+    }
+}
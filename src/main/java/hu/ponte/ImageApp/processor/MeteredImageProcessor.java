@@ -0,0 +1,177 @@
+package hu.ponte.ImageApp.processor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Egy másik ImageProcessor köré mérést tesz: az átméretezések idejét (sikeres és sikertelen
+ * futás szerint), a bemeneti és kimeneti képek méretét, valamint a külső folyamatok nem nulla
+ * kilépési kódjait. A mérőszámok előre regisztráltak, így a mérés nem foglal memóriát a
+ * regisztrációhoz; csak a ritka hibakódok számlálói jönnek létre első előfordulásukkor.
+ */
+public class MeteredImageProcessor implements ImageProcessor, Closeable {
+
+    private final ImageProcessor delegate;
+    private final String toolName;
+    private final MeterRegistry registry;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final DistributionSummary inputSize;
+    private final DistributionSummary outputSize;
+    private final Map<Integer, Counter> exitCodeCounters = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate A mért processzor.
+     * @param toolName Az eszköz neve a mérőszámok "tool" címkéjében (pl. "graphicsmagick").
+     * @param registry A mérőszámok regisztere.
+     */
+    public MeteredImageProcessor(ImageProcessor delegate, String toolName, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.toolName = toolName;
+        this.registry = registry;
+        this.successTimer = Timer.builder("image.process")
+                .description("Duration of image resize operations")
+                .tag("tool", toolName).tag("outcome", "success")
+                .register(registry);
+        this.failureTimer = Timer.builder("image.process")
+                .description("Duration of image resize operations")
+                .tag("tool", toolName).tag("outcome", "failure")
+                .register(registry);
+        this.inputSize = DistributionSummary.builder("image.process.input.size")
+                .description("Size of the images passed to the processor")
+                .baseUnit("bytes").tag("tool", toolName)
+                .register(registry);
+        this.outputSize = DistributionSummary.builder("image.process.output.size")
+                .description("Size of the images produced by the processor")
+                .baseUnit("bytes").tag("tool", toolName)
+                .register(registry);
+    }
+
+    @Override
+    public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            File outputFile = delegate.resizeImage(inputFile, width, height, outputFilePath);
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inputSize.record(inputFile.length());
+            outputSize.record(outputFile.length());
+            return outputFile;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            recordFailure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException, InterruptedException {
+        CountingInputStream countingInput = new CountingInputStream(input);
+        CountingOutputStream countingOutput = new CountingOutputStream(output);
+        long start = System.nanoTime();
+        try {
+            delegate.resizeImage(countingInput, countingOutput, width, height, format, options);
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inputSize.record(countingInput.count);
+            outputSize.record(countingOutput.count);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            recordFailure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean supportsOutputFormat(String format) {
+        return delegate.supportsOutputFormat(format);
+    }
+
+    private void recordFailure(long start, Exception e) {
+        failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (e instanceof ExternalProcessException processException) {
+            exitCodeCounters.computeIfAbsent(processException.getExitCode(), exitCode ->
+                    Counter.builder("image.process.exit.codes")
+                            .description("Non-zero exit codes of external image processes")
+                            .tag("tool", toolName).tag("exit.code", String.valueOf(exitCode))
+                            .register(registry)).increment();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hu.ponte.ImageApp.processor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Az ImageProcessor olyan megvalósítása, amely képenként új folyamat indítása helyett
+ * hosszan futó GraphicsMagick/ImageMagick folyamatok készletét használja, és a feladatokat
+ * a standard bemenetükre írja.
+ * <p>
+ * A készletből kivett folyamatot használat előtt ellenőrizzük (fut-e még, illetve hosszabb
+ * tétlenség után válaszol-e), a leállt vagy időtúllépést okozó folyamatokat újakra cseréljük,
+ * és minden folyamatot adott számú feladat után újraindítunk. Ha minden folyamat foglalt, egy kérés
+ * legfeljebb "queueTimeoutMillis" ideig vár; utána {@link ProcessSaturatedException} jelzi a
+ * telítettséget, a képenként indított folyamatok futtatójához ({@link ProcessExecutor}) hasonlóan.
+ * A feladatok ugyanazokat a {@link ProcessLimits} korlátokat kapják, mint az egyszer futó eszközök.
+ */
+public class PooledImageProcessor implements ImageProcessor, Closeable {
+
+    private final BatchDialect dialect;
+    private final Semaphore permits;
+    private final Deque<BatchWorker> idleWorkers = new ConcurrentLinkedDeque<>();
+    private final int maxJobsPerWorker;
+    private final long jobTimeoutMillis;
+    private final long healthCheckIntervalNanos;
+    private final long queueTimeoutMillis;
+    private final long retryAfterSeconds;
+    private final ProcessLimits limits;
+    private volatile boolean closed;
+
+    /**
+     * Erőforrás-korlátok nélküli készlet 10 másodperces várakozási korláttal (benchmarkokhoz).
+     */
+    public PooledImageProcessor(BatchDialect dialect, int poolSize, int maxJobsPerWorker,
+                                long jobTimeoutMillis, long healthCheckIntervalMillis) {
+        this(dialect, poolSize, maxJobsPerWorker, jobTimeoutMillis, healthCheckIntervalMillis, 10_000, 1, ProcessLimits.NONE);
+    }
+
+    /**
+     * @param dialect                 A használt eszköz (GraphicsMagick vagy ImageMagick).
+     * @param poolSize                A készletben tartott folyamatok száma.
+     * @param maxJobsPerWorker        Ennyi feladat után a folyamat újraindul.
+     * @param jobTimeoutMillis        Egy feladat maximális futási ideje.
+     * @param healthCheckIntervalMillis Ennél hosszabb tétlenség után a folyamatot használat előtt ellenőrizzük.
+     * @param queueTimeoutMillis      Legfeljebb ennyi ideig vár egy kérés szabad folyamatra.
+     * @param retryAfterSeconds       Telítettség esetén ennyi másodperc múlva érdemes újrapróbálkozni.
+     * @param limits                  A feladatok erőforrás-korlátai.
+     */
+    public PooledImageProcessor(BatchDialect dialect, int poolSize, int maxJobsPerWorker,
+                                long jobTimeoutMillis, long healthCheckIntervalMillis,
+                                long queueTimeoutMillis, long retryAfterSeconds, ProcessLimits limits) {
+        if (poolSize < 1 || maxJobsPerWorker < 1 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("A készlet mérete és a feladatszám korlát legalább 1 kell legyen.");
+        }
+        this.dialect = dialect;
+        this.permits = new Semaphore(poolSize, true);
+        this.maxJobsPerWorker = maxJobsPerWorker;
+        this.jobTimeoutMillis = jobTimeoutMillis;
+        this.healthCheckIntervalNanos = TimeUnit.MILLISECONDS.toNanos(healthCheckIntervalMillis);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limits = limits;
+    }
+
+    /**
+     * Átméretezi a megadott képet a készlet egyik folyamatával.
+     *
+     * @param inputFile      A bemeneti kép fájlja.
+     * @param width          A kívánt szélesség pixelben.
+     * @param height         A kívánt magasság pixelben.
+     * @param outputFilePath Az átméretezett kép kimeneti fájl elérési útja.
+     * @return A kimeneti fájl, amely az átméretezett képet tartalmazza.
+     * @throws IOException          Ha a folyamat nem indítható, leállt vagy nem válaszolt időben.
+     * @throws InterruptedException Ha a várakozás megszakad.
+     */
+    @Override
+    public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException {
+        return resize(inputFile, width, height, outputFilePath, EncodingOptions.DEFAULTS);
+    }
+
+    /**
+     * Átméretezi a képet a készlet egyik folyamatával, a megadott kódolási beállításokkal. A folyamatok
+     * fájlokkal dolgoznak, ezért a bemenet és a kimenet egyedi nevű ideiglenes fájlokon keresztül halad.
+     *
+     * @param input   A bemeneti kép tartalma.
+     * @param output  A kimenet, ahová az átméretezett kép kerül.
+     * @param width   A kívánt szélesség pixelben.
+     * @param height  A kívánt magasság pixelben.
+     * @param format  A bemenet formátuma ("png" vagy "jpeg").
+     * @param options A kimenet kódolási beállításai.
+     * @throws IOException          Ha a folyamat nem indítható, leállt vagy nem válaszolt időben.
+     * @throws InterruptedException Ha a várakozás megszakad.
+     */
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException, InterruptedException {
+        Path inputFile = Files.createTempFile("imageapp-", "." + format);
+        Path outputFile = Files.createTempFile("imageapp-resized-", "." + options.outputFormat(format));
+        try {
+            Files.copy(input, inputFile, StandardCopyOption.REPLACE_EXISTING);
+            resize(inputFile.toFile(), width, height, outputFile.toString(), options);
+            Files.copy(outputFile, output);
+        } finally {
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    private File resize(File inputFile, int width, int height, String outputFilePath, EncodingOptions options)
+            throws IOException, InterruptedException {
+        String command = dialect.resizeCommand(inputFile.getAbsolutePath(), width, height, outputFilePath, options, limits);
+        BatchWorker worker = borrow();
+        int exitCode;
+        String errorOutput;
+        try {
+            exitCode = worker.execute(command, jobTimeoutMillis);
+            errorOutput = exitCode != 0 ? worker.errorOutput() : null;
+        } catch (IOException | InterruptedException e) {
+            worker.close();
+            release(null);
+            throw e;
+        }
+        release(worker);
+
+        if (exitCode != 0) {
+            throw new ExternalProcessException(dialect.toolName(), exitCode, errorOutput);
+        }
+        return new File(outputFilePath);
+    }
+
+    /**
+     * Kivesz egy folyamatot a készletből; ha nincs tétlen folyamat, de a készlet még nem telt meg,
+     * újat indít. A folyamatok így lustán, az első használatkor indulnak. Ha a várakozási idő alatt
+     * sem szabadul fel hely, {@link ProcessSaturatedException} kivétellel zárul.
+     */
+    private BatchWorker borrow() throws IOException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("The " + dialect.toolName() + " worker pool is closed");
+        }
+        if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new ProcessSaturatedException(dialect.toolName(), retryAfterSeconds);
+        }
+        try {
+            BatchWorker worker;
+            while ((worker = idleWorkers.pollFirst()) != null) {
+                if (isHealthy(worker)) {
+                    return worker;
+                }
+                worker.close();
+            }
+            return new BatchWorker(dialect);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isHealthy(BatchWorker worker) throws InterruptedException {
+        if (!worker.isAlive()) {
+            return false;
+        }
+        if (worker.idleNanos() < healthCheckIntervalNanos) {
+            return true;
+        }
+        try {
+            return worker.execute(dialect.pingCommand(), jobTimeoutMillis) == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Visszaadja a folyamatot a készletbe. Ha a folyamat elérte a feladatszám korlátot,
+     * vagy a készletet közben lezárták, leállítjuk; helyette a következő kérés indít újat.
+     */
+    private void release(BatchWorker worker) {
+        if (worker != null) {
+            if (closed || worker.completedJobs() >= maxJobsPerWorker) {
+                worker.close();
+            } else {
+                idleWorkers.addFirst(worker);
+            }
+        }
+        permits.release();
+    }
+
+    /**
+     * Leállítja a készlet összes tétlen folyamatát. A használatban lévő folyamatok
+     * a visszaadásukkor állnak le.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        BatchWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            worker.close();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package hu.ponte.ImageApp.processor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A külső képfeldolgozó folyamatok közös futtatója. Egyszerre legfeljebb "maxConcurrent"
+ * folyamat fut; a további kérések egy korlátos sorban legfeljebb "queueTimeoutMillis" ideig
+ * várnak szabad helyre, a sor megtelése vagy a várakozás lejárta esetén pedig
+ * {@link ProcessSaturatedException} jelzi a telítettséget. A folyamatok standard kimenetét és
+ * hibakimenetét mindig kiolvassuk (így a teli pipe puffer nem akaszthatja meg őket), a hibakimenet
+ * eleje a hibaüzenetbe kerül, a futásidőt túllépő folyamatokat pedig a leszármazottaikkal együtt
+ * leállítjuk.
+ */
+public class ProcessExecutor implements AutoCloseable {
+
+    private static final int MAX_ERROR_OUTPUT = 4096;
+
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final Counter rejected;
+    private final Counter timeouts;
+
+    /**
+     * Mérőszámok nélküli futtató (benchmarkokhoz és a közvetlenül létrehozott feldolgozókhoz).
+     */
+    public ProcessExecutor(int maxConcurrent, int maxQueued, long queueTimeoutMillis, long timeoutMillis) {
+        this(maxConcurrent, maxQueued, queueTimeoutMillis, timeoutMillis, 1, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param maxConcurrent      Az egyszerre futó folyamatok legnagyobb száma.
+     * @param maxQueued          A szabad helyre egyszerre várakozó kérések legnagyobb száma (0 = nincs várakozás).
+     * @param queueTimeoutMillis Legfeljebb ennyi ideig vár egy kérés szabad helyre.
+     * @param timeoutMillis      Egy folyamat legnagyobb futásideje, amely után leállítjuk.
+     * @param retryAfterSeconds  Telítettség esetén ennyi másodperc múlva érdemes újrapróbálkozni.
+     * @param meterRegistry      A mérőszámok regisztere.
+     */
+    public ProcessExecutor(int maxConcurrent, int maxQueued, long queueTimeoutMillis, long timeoutMillis,
+                           long retryAfterSeconds, MeterRegistry meterRegistry) {
+        if (maxConcurrent < 1 || maxQueued < 0 || queueTimeoutMillis < 0 || timeoutMillis < 1) {
+            throw new IllegalArgumentException("Invalid process executor limits");
+        }
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "process-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog.setRemoveOnCancelPolicy(true);
+
+        Gauge.builder("image.process.active", active, AtomicInteger::get)
+                .description("External image processes currently running")
+                .register(meterRegistry);
+        Gauge.builder("image.process.queued", queued, AtomicInteger::get)
+                .description("Requests waiting for a free external process slot")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("image.process.rejected")
+                .description("External process requests rejected because the process limit was saturated")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("image.process.timeouts")
+                .description("External processes killed after exceeding the timeout")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A processzormagok számával megegyező párhuzamosságú futtató, magonként négy várakozóval,
+     * 10 másodperces várakozási és 30 másodperces futási korláttal.
+     *
+     * @return Az új futtató.
+     */
+    public static ProcessExecutor withDefaults() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ProcessExecutor(cores, cores * 4, 10_000, 30_000);
+    }
+
+    /**
+     * Lefuttatja a parancsot: a bemenetet egy külön szál írja a folyamat standard bemenetére,
+     * a hibakimenetet egy másik szál gyűjti, a standard kimenet pedig a hívó szálán kerül a kimenetre.
+     *
+     * @param toolName A futtatott eszköz neve hibaüzenetekhez.
+     * @param command  A futtatandó parancs.
+     * @param input    A folyamat standard bemenetére írandó tartalom.
+     * @param output   A kimenet, ahová a folyamat standard kimenete kerül.
+     * @throws IOException          Ha a folyamat nem indítható ({@link ProcessUnavailableException}), vagy az I/O sikertelen.
+     * @throws InterruptedException Ha a várakozás megszakad.
+     */
+    public void pipe(String toolName, List<String> command, InputStream input, OutputStream output)
+            throws IOException, InterruptedException {
+        acquire(toolName);
+        try {
+            execute(toolName, command, input, output);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Lefuttatja a fájlokkal dolgozó parancsot; a standard kimenetet eldobjuk.
+     *
+     * @param toolName A futtatott eszköz neve hibaüzenetekhez.
+     * @param command  A futtatandó parancs.
+     * @throws IOException          Ha a folyamat nem indítható ({@link ProcessUnavailableException}).
+     * @throws InterruptedException Ha a várakozás megszakad.
+     */
+    public void run(String toolName, List<String> command) throws IOException, InterruptedException {
+        acquire(toolName);
+        try {
+            execute(toolName, command, null, null);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return true, ha minden hely foglalt, és a várakozási sor is megtelt.
+     */
+    public boolean isSaturated() {
+        return permits.availablePermits() == 0 && queued.get() >= maxQueued;
+    }
+
+    private void acquire(String toolName) throws InterruptedException {
+        if (permits.tryAcquire()) {
+            active.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new ProcessSaturatedException(toolName, retryAfterSeconds);
+        }
+        try {
+            if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new ProcessSaturatedException(toolName, retryAfterSeconds);
+            }
+            active.incrementAndGet();
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        permits.release();
+    }
+
+    private void execute(String toolName, List<String> command, InputStream input, OutputStream output)
+            throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (output == null) {
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        }
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            throw new ProcessUnavailableException(toolName + " process could not be started: " + e.getMessage(), e);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> kill = watchdog.schedule(() -> {
+            timedOut.set(true);
+            destroyTree(process);
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+        Thread writer = startDaemon(toolName + "-stdin", () -> {
+            try (OutputStream stdin = process.getOutputStream()) {
+                if (input != null) {
+                    input.transferTo(stdin);
+                }
+            } catch (IOException ignored) {
+                // A folyamat idő előtt lezárhatja a bemenetét; a kilépési kód jelzi a hibát
+            }
+        });
+        Thread errorReader = startDaemon(toolName + "-stderr", () -> drain(process.getErrorStream(), errorOutput));
+
+        try {
+            if (output != null) {
+                try (InputStream stdout = process.getInputStream()) {
+                    stdout.transferTo(output);
+                } catch (IOException e) {
+                    // A leállított folyamat kimenete hibával zárulhat; ilyenkor az időtúllépést jelezzük
+                    if (!timedOut.get()) {
+                        throw e;
+                    }
+                }
+            }
+            // A felügyelő legkésőbb a futásidő lejártakor leállítja a folyamatot, így a várakozás véges
+            int exitCode = process.waitFor();
+            // Egy leszármazott (pl. az ImageMagick delegált programja) a szülő kilépése után is nyitva
+            // tarthatja a bemenetet vagy a hibakimenetet; rájuk is csak a futásidő lejártáig várunk
+            if (!join(writer, deadline) || !join(errorReader, deadline)) {
+                timedOut.set(true);
+                destroyTree(process);
+            }
+            kill.cancel(false);
+            if (timedOut.get()) {
+                timeouts.increment();
+                throw ExternalProcessException.timedOut(toolName, timeoutMillis, errorText(errorOutput));
+            }
+            if (exitCode != 0) {
+                throw new ExternalProcessException(toolName, exitCode, errorText(errorOutput));
+            }
+        } finally {
+            kill.cancel(false);
+            if (process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+    }
+
+    /**
+     * Leállítja a folyamatot és a leszármazottait (pl. az ImageMagick delegált programjait).
+     * A leszármazottakat a szülő előtt kérdezzük le, mert annak leállása után már nem tartoznak hozzá.
+     */
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Megvárja a szál végét legfeljebb a határidőig.
+     *
+     * @return true, ha a szál befejeződött.
+     */
+    private static boolean join(Thread thread, long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+        return !thread.isAlive();
+    }
+
+    private static String errorText(ByteArrayOutputStream errorOutput) {
+        synchronized (errorOutput) {
+            return errorOutput.toString(StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private static void drain(InputStream stream, ByteArrayOutputStream target) {
+        byte[] buffer = new byte[1024];
+        try (stream) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                synchronized (target) {
+                    int room = MAX_ERROR_OUTPUT - target.size();
+                    if (room > 0) {
+                        target.write(buffer, 0, Math.min(room, read));
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // A folyamat leállásakor a stream lezárul
+        }
+    }
+
+    private static Thread startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package hu.ponte.ImageApp.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Egy külső képfeldolgozó folyamat erőforrás-korlátai, a GraphicsMagick és az ImageMagick
+ * {@code -limit} kapcsolójával átadva. A null értékű mezők az eszköz saját alapértelmezését jelentik.
+ *
+ * @param memory  A folyamat által a képpuffereknek lefoglalható memória (pl. "256MB"); e fölött az eszköz
+ *                lemezre (memória-leképezett fájlba) dolgozik.
+ * @param threads A folyamat által használt szálak száma.
+ */
+public record ProcessLimits(String memory, Integer threads) {
+
+    /**
+     * Korlátok nélkül, az eszközök alapértelmezése szerint.
+     */
+    public static final ProcessLimits NONE = new ProcessLimits(null, null);
+
+    public ProcessLimits {
+        memory = memory == null || memory.isBlank() ? null : memory.trim();
+        if (memory != null && !memory.matches("[0-9]+[A-Za-z]*")) {
+            throw new IllegalArgumentException("Invalid process memory limit: " + memory);
+        }
+        if (threads != null && threads < 1) {
+            throw new IllegalArgumentException("Process thread limit must be at least 1");
+        }
+    }
+
+    /**
+     * @return A {@code gm convert} kapcsolói.
+     */
+    List<String> graphicsMagickArguments() {
+        return arguments("threads");
+    }
+
+    /**
+     * @return A {@code magick} kapcsolói (az ImageMagick a szálak erőforrását "thread" néven ismeri).
+     */
+    List<String> imageMagickArguments() {
+        return arguments("thread");
+    }
+
+    private List<String> arguments(String threadResource) {
+        List<String> arguments = new ArrayList<>();
+        if (memory != null) {
+            arguments.addAll(List.of("-limit", "memory", memory));
+        }
+        if (threads != null) {
+            arguments.addAll(List.of("-limit", threadResource, String.valueOf(threads)));
+        }
+        return arguments;
+    }
+}
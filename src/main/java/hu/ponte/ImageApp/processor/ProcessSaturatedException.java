@@ -0,0 +1,26 @@
+package hu.ponte.ImageApp.processor;
+
+/**
+ * A külső képfeldolgozó folyamatok korlátja és várakozási sora is megtelt, ezért a feladat
+ * el sem indult. A hívó átirányíthatja a feladatot (pl. a JVM-en belüli feldolgozóra), vagy
+ * 503-as válasszal jelezheti a kliensnek, hogy később próbálkozzon.
+ */
+public class ProcessSaturatedException extends RuntimeException {
+
+    private final String toolName;
+    private final long retryAfterSeconds;
+
+    public ProcessSaturatedException(String toolName, long retryAfterSeconds) {
+        super(toolName + " process limit reached, try again later");
+        this.toolName = toolName;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
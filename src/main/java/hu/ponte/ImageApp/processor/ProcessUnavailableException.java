@@ -0,0 +1,19 @@
+package hu.ponte.ImageApp.processor;
+
+import java.io.IOException;
+
+/**
+ * A külső képfeldolgozó folyamat nem indítható (pl. az eszköz nincs telepítve), váratlanul
+ * leállt, vagy nem válaszolt időben. A feldolgozó hibája, nem a bemeneté, ezért a hívó egy
+ * másik feldolgozóval megismételheti a feladatot.
+ */
+public class ProcessUnavailableException extends IOException {
+
+    public ProcessUnavailableException(String message) {
+        super(message);
+    }
+
+    public ProcessUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
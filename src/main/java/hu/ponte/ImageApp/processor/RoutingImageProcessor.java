@@ -0,0 +1,375 @@
+package hu.ponte.ImageApp.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Több képfeldolgozó között választó ImageProcessor. A kéréseket formátum (PNG, JPEG) és
+ * méretosztály (kicsi, nagy) szerint csoportosítja, és csoportonként a legkisebb mért
+ * átlagos (exponenciálisan súlyozott) futásidejű feldolgozót választja. A futásidőket
+ * induláskor egy rövid kalibráció tölti fel, majd minden átméretezés frissíti, így a
+ * választás futás közben alkalmazkodik; időnként egy másik feldolgozót is kipróbál, hogy
+ * annak mért ideje se avuljon el. Csak a feldolgozó saját hibájára (a folyamat nem indul, leáll
+ * vagy túllépi a futásidőt, lásd {@link ProcessUnavailableException} és
+ * {@link ExternalProcessException#isTimedOut()}) vált a következőre, a hibás feldolgozót pedig egy ideig
+ * csak végső esetben használja. A telített (lásd {@link ProcessSaturatedException}) feldolgozó helyett
+ * is a következőt próbálja, de azt nem kezeli hibásként. A bemenet hibái (pl. sérült vagy nem
+ * dekódolható kép) minden feldolgozón ugyanígy végződnének, ezért azokat azonnal továbbadja.
+ */
+public class RoutingImageProcessor implements ImageProcessor, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RoutingImageProcessor.class);
+
+    /**
+     * Az új mérések súlya az átlagban.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * A bemenet mérete szerinti osztály.
+     */
+    public enum SizeClass {
+        SMALL, LARGE
+    }
+
+    /**
+     * Egy választható feldolgozó.
+     *
+     * @param name      A feldolgozó neve naplózáshoz (pl. "graphicsmagick").
+     * @param processor A feldolgozó.
+     */
+    public record Backend(String name, ImageProcessor processor) {
+    }
+
+    private final List<Backend> backends;
+    private final long largeThresholdBytes;
+    private final long failureCooldownNanos;
+    private final int explorationInterval;
+    private final Map<String, BackendStats[]> routes = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param backends            A választható feldolgozók, legalább egy.
+     * @param largeThresholdBytes Az a bemeneti méret, amelytől a kép a nagy méretosztályba tartozik.
+     * @param failureCooldownMillis A hibás feldolgozó kerülésének időtartama.
+     * @param explorationInterval Minden hányadik kérés próbáljon ki egy másik feldolgozót (0 = soha).
+     */
+    public RoutingImageProcessor(List<Backend> backends, long largeThresholdBytes, long failureCooldownMillis,
+                                 int explorationInterval) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one image processor backend is required");
+        }
+        this.backends = List.copyOf(backends);
+        this.largeThresholdBytes = largeThresholdBytes;
+        this.failureCooldownNanos = TimeUnit.MILLISECONDS.toNanos(failureCooldownMillis);
+        this.explorationInterval = explorationInterval;
+    }
+
+    @Override
+    public File resizeImage(File inputFile, int width, int height, String outputFilePath) throws IOException, InterruptedException {
+        String format = normalizeFormat(outputFilePath.substring(outputFilePath.lastIndexOf('.') + 1));
+        BackendStats[] stats = route(format, sizeClass(inputFile.length()));
+        Exception failure = null;
+        for (int index : order(stats)) {
+            long start = System.nanoTime();
+            try {
+                File outputFile = backends.get(index).processor().resizeImage(inputFile, width, height, outputFilePath);
+                stats[index].recordSuccess(System.nanoTime() - start);
+                return outputFile;
+            } catch (IOException | RuntimeException e) {
+                if (!isBackendFault(e)) {
+                    addSuppressed(e, failure);
+                    throw e;
+                }
+                failure = recordFailure(index, stats, e, failure);
+            }
+        }
+        throw rethrow(failure);
+    }
+
+    @Override
+    public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                            EncodingOptions options) throws IOException, InterruptedException {
+        // A bemenetet pufferbe olvassuk, hogy hiba esetén egy másik feldolgozó is megkaphassa
+        byte[] data = input.readAllBytes();
+        String outputFormat = options.outputFormat(format);
+        BackendStats[] stats = route(outputFormat, sizeClass(data.length));
+        Exception failure = null;
+        for (int index : order(stats)) {
+            ImageProcessor processor = backends.get(index).processor();
+            if (!processor.supportsOutputFormat(outputFormat)) {
+                continue;
+            }
+            ByteArrayOutputStream resized = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+            try {
+                processor.resizeImage(new ByteArrayInputStream(data), resized, width, height, format, options);
+                stats[index].recordSuccess(System.nanoTime() - start);
+                resized.writeTo(output);
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!isBackendFault(e)) {
+                    addSuppressed(e, failure);
+                    throw e;
+                }
+                failure = recordFailure(index, stats, e, failure);
+            }
+        }
+        if (failure == null) {
+            throw new IOException("No image processor can write " + outputFormat + " images");
+        }
+        throw rethrow(failure);
+    }
+
+    /**
+     * @return true, ha legalább egy feldolgozó tud ilyen formátumú kimenetet előállítani.
+     */
+    @Override
+    public boolean supportsOutputFormat(String format) {
+        return backends.stream().anyMatch(backend -> backend.processor().supportsOutputFormat(format));
+    }
+
+    /**
+     * Minden feldolgozót lefuttat egy-egy generált PNG és JPEG képen mindkét méretosztályban,
+     * és a mért időkkel feltölti a választás alapjául szolgáló átlagokat.
+     *
+     * @throws InterruptedException Ha a kalibráció megszakad.
+     */
+    public void calibrate() throws InterruptedException {
+        for (String format : List.of("png", "jpeg")) {
+            for (boolean large : new boolean[]{false, true}) {
+                byte[] image;
+                try {
+                    image = calibrationImage(format, large);
+                } catch (IOException e) {
+                    log.warn("Could not generate {} calibration image: {}", format, e.getMessage());
+                    continue;
+                }
+                SizeClass sizeClass = sizeClass(image.length);
+                BackendStats[] stats = route(format, sizeClass);
+                for (int index = 0; index < backends.size(); index++) {
+                    Backend backend = backends.get(index);
+                    try {
+                        // Az első futás bemelegítés (JIT, fájlrendszer-gyorsítótár), csak a második számít
+                        backend.processor().resizeImage(new ByteArrayInputStream(image), OutputStream.nullOutputStream(), 200, 200, format);
+                        long start = System.nanoTime();
+                        backend.processor().resizeImage(new ByteArrayInputStream(image), OutputStream.nullOutputStream(), 200, 200, format);
+                        stats[index].recordSuccess(System.nanoTime() - start);
+                    } catch (IOException | RuntimeException e) {
+                        stats[index].recordFailure(failureCooldownNanos);
+                        log.warn("Calibration of {} failed for {} {}: {}", backend.name(), sizeClass, format, e.getMessage());
+                    }
+                }
+                log.info("Image processor calibration for {} {} ({} bytes): {}", sizeClass, format, image.length, describe(stats));
+            }
+        }
+    }
+
+    /**
+     * @param format    A formátum ("png" vagy "jpeg").
+     * @param sizeClass A méretosztály.
+     * @return A feldolgozók átlagos futásideje ezredmásodpercben, a feldolgozók neve szerint
+     * (NaN, ha még nincs mérés).
+     */
+    public Map<String, Double> averageMillis(String format, SizeClass sizeClass) {
+        BackendStats[] stats = route(normalizeFormat(format), sizeClass);
+        Map<String, Double> averages = new LinkedHashMap<>();
+        for (int index = 0; index < backends.size(); index++) {
+            averages.put(backends.get(index).name(), stats[index].average() / 1_000_000.0);
+        }
+        return averages;
+    }
+
+    /**
+     * Lezárja az összes lezárható feldolgozót. Egy feldolgozó hibája nem akadályozza a többi
+     * lezárását: az első hibát dobja tovább, a későbbieket ahhoz csatolja.
+     *
+     * @throws IOException Ha valamelyik feldolgozó lezárása sikertelen.
+     */
+    @Override
+    public void close() throws IOException {
+        Exception failure = null;
+        for (Backend backend : backends) {
+            if (backend.processor() instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException | RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private SizeClass sizeClass(long bytes) {
+        return bytes >= largeThresholdBytes ? SizeClass.LARGE : SizeClass.SMALL;
+    }
+
+    private BackendStats[] route(String format, SizeClass sizeClass) {
+        return routes.computeIfAbsent(format + "/" + sizeClass, key -> {
+            BackendStats[] stats = new BackendStats[backends.size()];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new BackendStats();
+            }
+            return stats;
+        });
+    }
+
+    /**
+     * A kipróbálás sorrendje: először a még nem mért, majd a leggyorsabb elérhető feldolgozók,
+     * végül a hiba miatt kerültek. Minden explorationInterval-edik kérésnél a második legjobb kerül előre.
+     */
+    private List<Integer> order(BackendStats[] stats) {
+        long now = System.nanoTime();
+        List<Integer> available = new ArrayList<>(stats.length);
+        List<Integer> coolingDown = new ArrayList<>();
+        for (int index = 0; index < stats.length; index++) {
+            (stats[index].isCoolingDown(now) ? coolingDown : available).add(index);
+        }
+        Comparator<Integer> byAverage = Comparator.comparingDouble(index -> {
+            double average = stats[index].average();
+            return Double.isNaN(average) ? -1 : average;
+        });
+        available.sort(byAverage);
+        if (explorationInterval > 0 && available.size() > 1
+                && requests.incrementAndGet() % explorationInterval == 0) {
+            available.add(0, available.remove(1));
+        }
+        available.addAll(coolingDown);
+        return available;
+    }
+
+    /**
+     * @return true, ha a hibát a feldolgozó okozta (és egy másik feldolgozó sikerrel járhat), nem a bemenet.
+     */
+    static boolean isBackendFault(Exception e) {
+        return e instanceof ProcessSaturatedException || e instanceof ProcessUnavailableException
+                || e instanceof ExternalProcessException external && external.isTimedOut();
+    }
+
+    private static void addSuppressed(Exception e, Exception previous) {
+        if (previous != null) {
+            e.addSuppressed(previous);
+        }
+    }
+
+    private Exception recordFailure(int index, BackendStats[] stats, Exception e, Exception previous) {
+        if (e instanceof ProcessSaturatedException) {
+            // A telített eszköz nem hibás, csak a terhelést tereljük át, ezért nem kerül kerülendő állapotba
+            log.debug("Image processor {} is saturated, trying the next one", backends.get(index).name());
+        } else {
+            stats[index].recordFailure(failureCooldownNanos);
+            log.warn("Image processor {} failed, trying the next one: {}", backends.get(index).name(), e.getMessage());
+        }
+        addSuppressed(e, previous);
+        return e;
+    }
+
+    private static IOException rethrow(Exception failure) {
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        return (IOException) failure;
+    }
+
+    private String describe(BackendStats[] stats) {
+        StringBuilder description = new StringBuilder();
+        for (int index = 0; index < backends.size(); index++) {
+            if (index > 0) {
+                description.append(", ");
+            }
+            description.append(backends.get(index).name()).append('=')
+                    .append(String.format(Locale.ROOT, "%.1f ms", stats[index].average() / 1_000_000.0));
+        }
+        return description.toString();
+    }
+
+    private static String normalizeFormat(String format) {
+        String normalized = format.toLowerCase(Locale.ROOT);
+        return "jpg".equals(normalized) ? "jpeg" : normalized;
+    }
+
+    /**
+     * Kalibrációs kép: a kicsi egy sima színátmenet, a nagy egy zajjal terhelt, fényképszerűen tömöríthető kép.
+     */
+    private static byte[] calibrationImage(String format, boolean large) throws IOException {
+        int width = large ? 3000 : 640;
+        int height = large ? 2000 : 480;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        if (large) {
+            Random random = new Random(42);
+            for (int y = 0; y < height; y += 2) {
+                for (int x = 0; x < width; x += 2) {
+                    image.setRGB(x, y, image.getRGB(x, y) ^ (random.nextInt(32) * 0x010101));
+                }
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Egy feldolgozó mért futásideje és hibaállapota egy formátum és méretosztály esetén.
+     */
+    private static final class BackendStats {
+
+        private double averageNanos = Double.NaN;
+        private long coolingDownUntil;
+        private boolean failed;
+
+        synchronized void recordSuccess(long nanos) {
+            averageNanos = Double.isNaN(averageNanos) ? nanos : averageNanos + SMOOTHING * (nanos - averageNanos);
+            failed = false;
+        }
+
+        synchronized void recordFailure(long cooldownNanos) {
+            failed = true;
+            coolingDownUntil = System.nanoTime() + cooldownNanos;
+        }
+
+        synchronized boolean isCoolingDown(long now) {
+            return failed && now - coolingDownUntil < 0;
+        }
+
+        synchronized double average() {
+            return averageNanos;
+        }
+    }
+}
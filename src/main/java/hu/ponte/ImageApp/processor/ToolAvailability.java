@@ -0,0 +1,94 @@
+package hu.ponte.ImageApp.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Külső képfeldolgozó eszközök elérhetőségének ellenőrzése.
+ */
+public final class ToolAvailability {
+
+    private static final long CHECK_TIMEOUT_SECONDS = 10;
+
+    private ToolAvailability() {
+    }
+
+    /**
+     * @return true, ha a GraphicsMagick (gm) telepítve van és futtatható.
+     */
+    public static boolean isGraphicsMagickAvailable() {
+        return runsSuccessfully("gm", "version");
+    }
+
+    /**
+     * @return true, ha az ImageMagick (magick) telepítve van és futtatható.
+     */
+    public static boolean isImageMagickAvailable() {
+        return runsSuccessfully("magick", "-version");
+    }
+
+    /**
+     * Lekérdezi, milyen formátumokba tud írni egy eszköz ({@code gm convert -list format},
+     * illetve {@code magick -list format}). A lista soraiban a formátum neve után egy
+     * "rw-" alakú mód áll, amelynek második karaktere jelzi az írási támogatást.
+     *
+     * @param command A formátumlistát kiíró parancs.
+     * @return Az írható formátumok kisbetűs nevei; üres, ha az eszköz nem futtatható.
+     */
+    public static Set<String> writableFormats(String... command) {
+        Set<String> formats = new HashSet<>();
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] tokens = line.trim().split("\\s+");
+                    for (int i = 1; i < tokens.length; i++) {
+                        if (tokens[i].matches("[r-][w-][+-]")) {
+                            if (tokens[i].charAt(1) == 'w') {
+                                formats.add(tokens[0].replace("*", "").toLowerCase(Locale.ROOT));
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!process.waitFor(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            return Set.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Set.of();
+        }
+        return formats;
+    }
+
+    private static boolean runsSuccessfully(String... command) {
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
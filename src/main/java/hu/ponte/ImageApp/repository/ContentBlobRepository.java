@@ -0,0 +1,28 @@
+package hu.ponte.ImageApp.repository;
+
+import hu.ponte.ImageApp.entity.ContentBlobEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A ContentBlobEntity entitáshoz tartozó JPA repository.
+ */
+public interface ContentBlobRepository extends JpaRepository<ContentBlobEntity, String> {
+
+    /**
+     * Lekérdezi és írásra zárolja a megadott hash-ű tartalmakat, hogy a hivatkozásszámlálók
+     * párhuzamos feltöltések mellett is helyesen változzanak.
+     *
+     * @param contentHashes A tartalmak hash-ei.
+     * @return A már tárolt tartalmak.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from ContentBlobEntity b where b.contentHash in :contentHashes")
+    List<ContentBlobEntity> findAllForUpdate(@Param("contentHashes") Collection<String> contentHashes);
+}
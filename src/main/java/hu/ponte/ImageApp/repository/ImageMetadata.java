@@ -0,0 +1,28 @@
+package hu.ponte.ImageApp.repository;
+
+import java.time.Instant;
+
+/**
+ * Egy kép metaadatai a titkosított tartalom nélkül. JPA projekcióként használva
+ * a lekérdezés csak ezeket az oszlopokat olvassa.
+ */
+public interface ImageMetadata {
+
+    Long getId();
+
+    String getFileName();
+
+    Long getFileSize();
+
+    Long getOriginalSize();
+
+    Integer getWidth();
+
+    Integer getHeight();
+
+    String getContentType();
+
+    Instant getUploadedAt();
+
+    String getContentHash();
+}
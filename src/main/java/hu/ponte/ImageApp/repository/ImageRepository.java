@@ -1,7 +1,19 @@
 package hu.ponte.ImageApp.repository;
 
 import hu.ponte.ImageApp.entity.ImageEntity;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * Az ImageEntity entitáshoz tartozó JPA repository, amely az adatbázisműveletek
@@ -9,6 +21,17 @@ import org.springframework.data.jpa.repository.JpaRepository;
  */
 public interface ImageRepository extends JpaRepository<ImageEntity, Long> {
 
+    /**
+     * A streamelt (szerveroldali kurzorral olvasott) lekérdezések JDBC fetch mérete: a driver
+     * egyszerre csak ennyi sort tölt be, így a teljes tábla sosem kerül egyszerre a memóriába.
+     */
+    int STREAM_FETCH_SIZE = 16;
+
+    /**
+     * A csak fájlneveket olvasó streamelt lekérdezés fetch mérete; a sorok kicsik, így egyszerre több is betölthető.
+     */
+    int NAME_STREAM_FETCH_SIZE = 1000;
+
     /**
      * Megkeresi a képet a fájl neve alapján.
      *
@@ -17,6 +40,14 @@ public interface ImageRepository extends JpaRepository<ImageEntity, Long> {
      */
     ImageEntity findByFileName(String fileName);
 
+    /**
+     * A kép letöltéséhez szükséges adatok a fájl neve alapján, a titkosított tartalom betöltése nélkül.
+     *
+     * @param fileName A kép fájlneve.
+     * @return A kép adatai, ha megtalálható, különben null.
+     */
+    StoredImageInfo findInfoByFileName(String fileName);
+
     /**
      * Ellenőrzi, hogy létezik-e már egy kép a megadott fájlnévvel az adatbázisban.
      *
@@ -24,4 +55,45 @@ public interface ImageRepository extends JpaRepository<ImageEntity, Long> {
      * @return true, ha a fájlnévvel rendelkező kép már létezik, különben false.
      */
     boolean existsByFileName(String fileName);
+
+    /**
+     * Egyetlen lekérdezéssel visszaadja a megadott fájlnevek közül azokat, amelyekhez már tartozik kép.
+     *
+     * @param fileNames A keresett fájlnevek.
+     * @return A már létező fájlnevek.
+     */
+    @Query("select i.fileName from ImageEntity i where i.fileName in :fileNames")
+    List<String> findExistingFileNames(@Param("fileNames") Collection<String> fileNames);
+
+    /**
+     * Az összes tárolt fájlnév szerveroldali kurzorral olvasva (a fájlnév-szűrő induláskori feltöltéséhez).
+     * Tranzakción belül kell hívni, és a streamet le kell zárni.
+     *
+     * @return A fájlnevek.
+     */
+    @Query("select i.fileName from ImageEntity i")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + NAME_STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<String> streamAllFileNames();
+
+    /**
+     * Visszaadja a még régi formátumban tárolt képek következő kötegét: az images.encrypted_data
+     * oszlopban lévőket, és a tartalom hash-e nélkül a BlobStore-ba került régi titkosítású képeket.
+     *
+     * @return Legfeljebb 20 kép azonosító szerinti sorrendben.
+     */
+    List<ImageEntity> findTop20ByContentHashIsNullOrderByIdAsc();
+
+    /**
+     * A képek metaadatainak egy oldala kulcs alapú (keyset) lapozással: a megadott azonosítónál
+     * nagyobb azonosítójú képek, azonosító szerint növekvő sorrendben. A lekérdezés az elsődleges
+     * kulcs indexén indul, így a mély oldalak is gyorsak, és a titkosított tartalmat nem olvassa.
+     *
+     * @param afterId Az előző oldal utolsó azonosítója (az első oldalnál 0).
+     * @param limit   Az oldal mérete.
+     * @return A képek metaadatai.
+     */
+    List<ImageMetadata> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
 }
@@ -0,0 +1,20 @@
+package hu.ponte.ImageApp.repository;
+
+import hu.ponte.ImageApp.entity.ImageVariantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Az ImageVariantEntity entitáshoz tartozó JPA repository.
+ */
+public interface ImageVariantRepository extends JpaRepository<ImageVariantEntity, Long> {
+
+    /**
+     * Megkeresi egy kép adott méretű változatát.
+     *
+     * @param imageId Az alapkép azonosítója.
+     * @param width   A kért szélesség.
+     * @param height  A kért magasság.
+     * @return A változat, ha már elkészült, különben null.
+     */
+    ImageVariantEntity findByImageIdAndWidthAndHeight(Long imageId, Integer width, Integer height);
+}
@@ -0,0 +1,41 @@
+package hu.ponte.ImageApp.repository;
+
+import hu.ponte.ImageApp.entity.ResizeResultEntity;
+import hu.ponte.ImageApp.entity.ResizeResultEntity.ResizeResultId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A ResizeResultEntity entitáshoz tartozó JPA repository.
+ */
+public interface ResizeResultRepository extends JpaRepository<ResizeResultEntity, ResizeResultId> {
+
+    /**
+     * Megkeresi a megadott eredeti tartalmak adott méretre és kódolással végzett korábbi átméretezéseit.
+     *
+     * @param sourceHashes Az eredeti tartalmak hash-ei.
+     * @param width        A kért szélesség.
+     * @param height       A kért magasság.
+     * @param encoding     A kódolási beállítások szöveges alakja.
+     * @return A már ismert átméretezések.
+     */
+    @Query("select r from ResizeResultEntity r where r.id.sourceHash in :sourceHashes"
+            + " and r.id.width = :width and r.id.height = :height and r.id.encoding = :encoding")
+    List<ResizeResultEntity> findKnown(@Param("sourceHashes") Collection<String> sourceHashes,
+                                       @Param("width") int width, @Param("height") int height,
+                                       @Param("encoding") String encoding);
+
+    /**
+     * Törli az adott tartalomra mutató átméretezési eredményeket.
+     *
+     * @param contentHash Az átméretezett tartalom hash-e.
+     */
+    @Modifying
+    @Query("delete from ResizeResultEntity r where r.contentHash = :contentHash")
+    void deleteByContentHash(@Param("contentHash") String contentHash);
+}
@@ -0,0 +1,26 @@
+package hu.ponte.ImageApp.repository;
+
+import java.time.Instant;
+
+/**
+ * A kép letöltéséhez szükséges adatok a titkosított tartalom nélkül. A feltételes
+ * lekérdezések (If-None-Match) így a tartalom betöltése és visszafejtése nélkül megválaszolhatók.
+ */
+public interface StoredImageInfo {
+
+    Long getId();
+
+    String getContentKey();
+
+    Long getFileSize();
+
+    String getContentType();
+
+    String getContentHash();
+
+    Instant getUploadedAt();
+
+    Integer getWidth();
+
+    Integer getHeight();
+}
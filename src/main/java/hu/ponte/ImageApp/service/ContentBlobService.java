@@ -0,0 +1,221 @@
+package hu.ponte.ImageApp.service;
+
+import hu.ponte.ImageApp.entity.ContentBlobEntity;
+import hu.ponte.ImageApp.entity.ResizeResultEntity;
+import hu.ponte.ImageApp.entity.ResizeResultEntity.ResizeResultId;
+import hu.ponte.ImageApp.processor.EncodingOptions;
+import hu.ponte.ImageApp.repository.ContentBlobRepository;
+import hu.ponte.ImageApp.repository.ResizeResultRepository;
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.util.ContentHash;
+import hu.ponte.ImageApp.validation.ImageFormat;
+import hu.ponte.ImageApp.validation.ImageProbe;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A tartalom alapján azonosított, több kép által közösen használt képtartalmak nyilvántartása.
+ * Az azonos (átméretezett) tartalmú képek egyetlen titkosított tartalomra hivatkoznak a
+ * BlobStore-ban, amelyet a hivatkozások száma alapján csak az utolsó hivatkozás megszűnésekor törlünk.
+ */
+@Service
+public class ContentBlobService {
+
+    private final ContentBlobRepository contentBlobRepository;
+    private final ResizeResultRepository resizeResultRepository;
+    private final BlobStore blobStore;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ContentBlobService(ContentBlobRepository contentBlobRepository,
+                              ResizeResultRepository resizeResultRepository, BlobStore blobStore) {
+        this.contentBlobRepository = contentBlobRepository;
+        this.resizeResultRepository = resizeResultRepository;
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Összeállít egy még nem mentett tartalmat a titkosítás előtti képadatokból: a hash-sel, a mérettel,
+     * a CRC-32 ellenőrzőösszeggel, a típussal és (ha a formátum ismert) a kép méreteivel.
+     *
+     * @param imageData A kép titkosítatlan tartalma.
+     * @param format    A kép formátuma (pl. "jpeg").
+     * @return Az új tartalom; a kulcsát és a hivatkozásszámát a hívó állítja be.
+     * @throws IOException Ha a kép méretei nem olvashatók.
+     */
+    public static ContentBlobEntity newContent(byte[] imageData, String format) throws IOException {
+        ContentBlobEntity content = new ContentBlobEntity();
+        content.setContentHash(ContentHash.sha256Hex(imageData));
+        content.setFileSize((long) imageData.length);
+        content.setCrc32(ContentHash.crc32(imageData));
+        if (ImageFormat.fromMimeType(EncodingOptions.mimeType(format)) != null) {
+            // A méretek csak a beépített olvasóval rendelkező formátumoknál ismertek (WebP esetén nem)
+            Dimension dimensions = ImageProbe.readDimensions(new ByteArrayInputStream(imageData));
+            content.setWidth(dimensions.width);
+            content.setHeight(dimensions.height);
+        }
+        content.setContentType(EncodingOptions.mimeType(format));
+        content.setCreatedAt(Instant.now());
+        return content;
+    }
+
+    /**
+     * Megkeresi azokat az eredeti tartalmakat, amelyeket már átméreteztünk a kért méretre és
+     * kódolással, és az eredményük még tárolva van.
+     *
+     * @param sourceHashes Az eredeti tartalmak hash-ei.
+     * @param width        A kért szélesség.
+     * @param height       A kért magasság.
+     * @param encoding     A kódolási beállítások szöveges alakja.
+     * @return Az eredeti tartalom hash-e szerint az átméretezett tartalom.
+     */
+    public Map<String, ContentBlobEntity> findResizedContents(Collection<String> sourceHashes, int width, int height,
+                                                              String encoding) {
+        if (sourceHashes.isEmpty()) {
+            return Map.of();
+        }
+        List<ResizeResultEntity> results = resizeResultRepository.findKnown(sourceHashes, width, height, encoding);
+        if (results.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, ContentBlobEntity> contents =
+                findContents(results.stream().map(ResizeResultEntity::getContentHash).toList());
+        Map<String, ContentBlobEntity> bySource = new HashMap<>();
+        for (ResizeResultEntity result : results) {
+            ContentBlobEntity content = contents.get(result.getContentHash());
+            if (content != null) {
+                bySource.put(result.getId().getSourceHash(), content);
+            }
+        }
+        return bySource;
+    }
+
+    /**
+     * @param contentHashes A tartalmak hash-ei.
+     * @return A már tárolt tartalmak hash szerint.
+     */
+    public Map<String, ContentBlobEntity> findContents(Collection<String> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, ContentBlobEntity> contents = new HashMap<>();
+        contentBlobRepository.findAllById(contentHashes).forEach(content -> contents.put(content.getContentHash(), content));
+        return contents;
+    }
+
+    /**
+     * Hivatkozásokat vesz fel a megadott tartalmakra. A már tárolt tartalmak hivatkozásszámát
+     * növeli, a többit a jelöltek közül menti el. Ha egy jelölttel azonos tartalmat közben
+     * egy másik feltöltés már elmentett, a tárolt tartalom kerül felhasználásra, és a jelölt
+     * tartalma feleslegessé válik.
+     *
+     * @param references A tartalmak hash-e szerint a felveendő hivatkozások száma.
+     * @param candidates Az újonnan titkosított tartalmak hash szerint (még nem mentett entitások).
+     * @return A hivatkozott, tárolt tartalmak hash szerint.
+     * @throws IllegalStateException Ha egy hivatkozott tartalom már nincs tárolva, és nincs hozzá jelölt.
+     */
+    @Transactional
+    public Map<String, ContentBlobEntity> acquire(Map<String, Long> references, Map<String, ContentBlobEntity> candidates) {
+        Map<String, ContentBlobEntity> stored = new HashMap<>();
+        contentBlobRepository.findAllForUpdate(references.keySet())
+                .forEach(content -> stored.put(content.getContentHash(), content));
+        for (Map.Entry<String, Long> reference : references.entrySet()) {
+            ContentBlobEntity content = stored.get(reference.getKey());
+            if (content != null) {
+                content.setRefCount(content.getRefCount() + reference.getValue());
+                continue;
+            }
+            content = candidates.get(reference.getKey());
+            if (content == null) {
+                throw new IllegalStateException("Content " + reference.getKey() + " is no longer stored");
+            }
+            content.setRefCount(reference.getValue());
+            entityManager.persist(content);
+            stored.put(content.getContentHash(), content);
+        }
+        return stored;
+    }
+
+    /**
+     * Elmenti az átméretezések eredményét, hogy ugyanannak a tartalomnak az ugyanerre a méretre
+     * és kódolással történő ismételt feltöltésekor az átméretezés kihagyható legyen. Ha
+     * "skipRecorded" igaz, a tranzakción belül már látható eredményeket kihagyja; ez egy párhuzamos
+     * feltöltéssel ütközött mentés megismétlésekor kell, amikor a másik feltöltés ugyanazt az
+     * átméretezést már rögzítette.
+     *
+     * @param resizedContents Az eredeti tartalom hash-e szerint az átméretezett tartalom hash-e.
+     * @param width           A kért szélesség.
+     * @param height          A kért magasság.
+     * @param encoding        A kódolási beállítások szöveges alakja.
+     * @param skipRecorded    Kihagyja-e a már rögzített átméretezéseket (egy további lekérdezés árán).
+     */
+    @Transactional
+    public void recordResizes(Map<String, String> resizedContents, int width, int height, String encoding,
+                              boolean skipRecorded) {
+        Set<String> recorded = new HashSet<>();
+        if (skipRecorded && !resizedContents.isEmpty()) {
+            resizeResultRepository.findKnown(resizedContents.keySet(), width, height, encoding)
+                    .forEach(result -> recorded.add(result.getId().getSourceHash()));
+        }
+        for (Map.Entry<String, String> resized : resizedContents.entrySet()) {
+            if (recorded.contains(resized.getKey())) {
+                continue;
+            }
+            ResizeResultEntity result = new ResizeResultEntity();
+            result.setId(new ResizeResultId(resized.getKey(), width, height, encoding));
+            result.setContentHash(resized.getValue());
+            entityManager.persist(result);
+        }
+    }
+
+    /**
+     * Megszüntet egy hivatkozást a tartalomra. Az utolsó hivatkozás megszűnésekor a tartalom
+     * és a rá mutató átméretezési eredmények törlődnek, a titkosított tartalom pedig a
+     * tranzakció sikeres lezárása után törlődik a tárolóból.
+     *
+     * @param contentHash A tartalom hash-e.
+     */
+    @Transactional
+    public void release(String contentHash) {
+        List<ContentBlobEntity> contents = contentBlobRepository.findAllForUpdate(List.of(contentHash));
+        if (contents.isEmpty()) {
+            return;
+        }
+        ContentBlobEntity content = contents.get(0);
+        if (content.getRefCount() > 1) {
+            content.setRefCount(content.getRefCount() - 1);
+            return;
+        }
+        resizeResultRepository.deleteByContentHash(contentHash);
+        contentBlobRepository.delete(content);
+        String contentKey = content.getContentKey();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    blobStore.delete(contentKey);
+                } catch (IOException ignored) {
+                    // Az árva tartalom nem okoz hibát, csak helyet foglal
+                }
+            }
+        });
+    }
+}
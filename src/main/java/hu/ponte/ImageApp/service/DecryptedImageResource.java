@@ -0,0 +1,52 @@
+package hu.ponte.ImageApp.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Egy tárolt kép visszafejtett tartalma Spring Resource-ként. A tartalom csak olvasáskor, minden
+ * olvasásnál újra kerül megnyitásra, a mérete pedig előre ismert, így a Spring MVC a Range
+ * kéréseket (206 Partial Content) is ki tudja szolgálni belőle.
+ */
+class DecryptedImageResource extends AbstractResource {
+
+    private final String fileName;
+    private final long size;
+    private final ContentOpener opener;
+
+    DecryptedImageResource(String fileName, long size, ContentOpener opener) {
+        this.fileName = fileName;
+        this.size = size;
+        this.opener = opener;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return opener.open();
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Decrypted image [" + fileName + "]";
+    }
+
+    /**
+     * A visszafejtett tartalom megnyitása.
+     */
+    @FunctionalInterface
+    interface ContentOpener {
+        InputStream open() throws IOException;
+    }
+}
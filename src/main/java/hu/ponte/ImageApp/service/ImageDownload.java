@@ -0,0 +1,17 @@
+package hu.ponte.ImageApp.service;
+
+import org.springframework.core.io.Resource;
+
+import java.time.Instant;
+
+/**
+ * Egy letöltendő kép. A tartalom csak a Resource olvasásakor kerül betöltésre és visszafejtésre,
+ * így a feltételes kérések a metaadatok alapján, a tartalom érintése nélkül megválaszolhatók.
+ *
+ * @param contentType A kép feltöltéskor rögzített MIME típusa, régi képeknél null.
+ * @param contentHash A kép tartalmának SHA-256 hash-e hexadecimálisan, régi képeknél null.
+ * @param uploadedAt  A feltöltés időpontja, régi képeknél null.
+ * @param content     A kép visszafejtett tartalma.
+ */
+public record ImageDownload(String contentType, String contentHash, Instant uploadedAt, Resource content) {
+}
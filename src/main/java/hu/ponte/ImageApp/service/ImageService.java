@@ -1,18 +1,60 @@
 package hu.ponte.ImageApp.service;
 
+import hu.ponte.ImageApp.cache.DecryptedImageCache;
+import hu.ponte.ImageApp.cache.DecryptedImageCache.CachedImage;
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.dto.ImageListResponse;
+import hu.ponte.ImageApp.entity.ContentBlobEntity;
 import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.metrics.ImageMetrics;
+import hu.ponte.ImageApp.metrics.ImageMetrics.DownloadSource;
+import hu.ponte.ImageApp.pipeline.PipelineStage;
+import hu.ponte.ImageApp.pipeline.UploadPipeline;
+import hu.ponte.ImageApp.pipeline.UploadProgressListener;
+import hu.ponte.ImageApp.processor.EncodingOptions;
 import hu.ponte.ImageApp.processor.ImageProcessor;
+import hu.ponte.ImageApp.repository.ImageMetadata;
 import hu.ponte.ImageApp.repository.ImageRepository;
-import hu.ponte.ImageApp.util.AESUtil;
+import hu.ponte.ImageApp.repository.StoredImageInfo;
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.util.ContentHash;
+import hu.ponte.ImageApp.util.ErrorMessages;
+import hu.ponte.ImageApp.validation.FileNameFilter;
 import hu.ponte.ImageApp.validation.FileValidator;
+import hu.ponte.ImageApp.validation.ImageFormat;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.nio.file.Files;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class ImageService {
@@ -20,6 +62,15 @@ public class ImageService {
     private final ImageRepository imageRepository;
     private final FileValidator fileValidator;
     private final ImageProcessor imageProcessor;
+    private final UploadPipeline uploadPipeline;
+    private final ImageCipher imageCipher;
+    private final BlobStore blobStore;
+    private final DecryptedImageCache imageCache;
+    private final ContentBlobService contentBlobService;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageMetrics imageMetrics;
+    private final EncodingOptions defaultEncoding;
+    private final FileNameFilter fileNameFilter;
 
     /**
      * Konstruktor a függőségek injektálására.
@@ -27,17 +78,70 @@ public class ImageService {
      * @param imageRepository Az adatbázis kezeléséért felelős repository osztály.
      * @param fileValidator   Fájlvalidációt végző osztály.
      * @param imageProcessor  Kép feldolgozását végző osztály (ImageMagick vagy GraphicsMagick).
+     * @param uploadPipeline  A fájlokat párhuzamosan feldolgozó folyamat.
+     * @param imageCipher     A képek titkosítását és visszafejtését végző komponens.
+     * @param blobStore       A titkosított képtartalmakat tároló réteg.
+     * @param imageCache      A gyakran letöltött képek visszafejtett tartalmának gyorsítótára.
+     * @param contentBlobService A közösen használt képtartalmak nyilvántartása.
+     * @param transactionTemplate A feltöltés mentésének tranzakciókezelője.
+     * @param imageMetrics    A feltöltések, letöltések és a ZIP export mérőszámai.
+     * @param defaultEncoding Az átméretezett képek alapértelmezett kódolása.
+     * @param fileNameFilter  A tárolt fájlnevek memóriabeli szűrője, amelybe a mentett nevek bekerülnek.
      */
     @Autowired
-    public ImageService(ImageRepository imageRepository, FileValidator fileValidator, ImageProcessor imageProcessor) {
+    public ImageService(ImageRepository imageRepository, FileValidator fileValidator, ImageProcessor imageProcessor,
+                        UploadPipeline uploadPipeline, ImageCipher imageCipher, BlobStore blobStore,
+                        DecryptedImageCache imageCache, ContentBlobService contentBlobService,
+                        TransactionTemplate transactionTemplate, ImageMetrics imageMetrics,
+                        EncodingOptions defaultEncoding, FileNameFilter fileNameFilter) {
         this.imageRepository = imageRepository;
         this.fileValidator = fileValidator;
         this.imageProcessor = imageProcessor;
+        this.uploadPipeline = uploadPipeline;
+        this.imageCipher = imageCipher;
+        this.blobStore = blobStore;
+        this.imageCache = imageCache;
+        this.contentBlobService = contentBlobService;
+        this.transactionTemplate = transactionTemplate;
+        this.imageMetrics = imageMetrics;
+        this.defaultEncoding = defaultEncoding;
+        this.fileNameFilter = fileNameFilter;
+    }
+
+    /**
+     * Egy kérés kódolási beállításai: az alapértelmezett kódolás a kérésben megadott értékekkel
+     * felülírva. A null paraméterek az alapértelmezett értéket hagyják meg.
+     *
+     * @param quality             A JPEG/WebP minőség (1-100).
+     * @param stripMetadata       A metaadatok eltávolítása.
+     * @param progressive         Progresszív JPEG kimenet.
+     * @param pngCompressionLevel A PNG tömörítési szint (0-9).
+     * @param format              A kimenet formátuma (pl. "webp").
+     * @return Az összevont kódolási beállítások.
+     * @throws IllegalArgumentException Ha egy érték érvénytelen, vagy a formátumot a képfeldolgozó nem tudja előállítani.
+     */
+    public EncodingOptions encodingOptions(Integer quality, Boolean stripMetadata, Boolean progressive,
+                                           Integer pngCompressionLevel, String format) {
+        EncodingOptions options = defaultEncoding.overriddenBy(quality, stripMetadata, progressive, pngCompressionLevel, format);
+        if (options.format() != null && !imageProcessor.supportsOutputFormat(options.format())) {
+            throw new IllegalArgumentException(ErrorMessages.UNSUPPORTED_OUTPUT_FORMAT + options.format());
+        }
+        return options;
     }
 
     /**
      * Képfájlok feltöltését és átméretezését végzi. A fájlokat ellenőrzi,
-     * lementi, átméretezi, titkosítja, majd adatbázisba menti.
+     * átméretezi, titkosítva a BlobStore-ba írja, majd a metaadatokat adatbázisba menti.
+     * A fájlok párhuzamosan kerülnek feldolgozásra; az egyes lépések párhuzamosságát
+     * az {@link UploadPipeline} korlátozza. Ha bármelyik fájl validálása sikertelen,
+     * egyik fájl sem kerül feldolgozásra, ha pedig bármelyik átméretezése vagy titkosítása
+     * sikertelen, egyik fájl sem kerül mentésre, és a már kiírt tartalmak törlődnek.
+     * <p>
+     * Az azonos átméretezett tartalmú képek egyetlen tárolt tartalomra hivatkoznak
+     * (lásd {@link ContentBlobService}), és ha ugyanazt a képet ugyanarra a méretre
+     * korábban már átméreteztük, az átméretezés is elmarad.
+     *
+     * Az átméretezett képek az alapértelmezett kódolással készülnek.
      *
      * @param files  A feltöltött képfájlok.
      * @param width  Az átméretezés szélessége.
@@ -45,64 +149,320 @@ public class ImageService {
      * @throws Exception Ha hiba történik a fájlok feldolgozása vagy mentése során.
      */
     public void handleImageUpload(MultipartFile[] files, int width, int height) throws Exception {
+        handleImageUpload(files, width, height, defaultEncoding, UploadProgressListener.NONE);
+    }
+
+    /**
+     * Mint {@link #handleImageUpload(MultipartFile[], int, int)}, de a megadott kódolással, és a
+     * fájlok lépésenkénti előrehaladásáról értesíti a megadott figyelőt.
+     *
+     * @param files    A feltöltött képfájlok.
+     * @param width    Az átméretezés szélessége.
+     * @param height   Az átméretezés magassága.
+     * @param encoding Az átméretezett képek kódolása (lásd {@link #encodingOptions}).
+     * @param listener Az előrehaladás figyelője.
+     * @throws Exception Ha hiba történik a fájlok feldolgozása vagy mentése során.
+     */
+    public void handleImageUpload(MultipartFile[] files, int width, int height, EncodingOptions encoding,
+                                  UploadProgressListener listener) throws Exception {
+        long bytesIn = 0;
         for (MultipartFile file : files) {
-            fileValidator.validateFile(file);
+            bytesIn += file.getSize();
+        }
+        long start = imageMetrics.uploadStarted(files.length, bytesIn);
+        boolean success = false;
+        try {
+            upload(files, width, height, encoding, listener);
+            success = true;
+        } finally {
+            imageMetrics.uploadFinished(start, success);
         }
+    }
+
+    private void upload(MultipartFile[] files, int width, int height, EncodingOptions encoding,
+                        UploadProgressListener listener) throws Exception {
+        List<Integer> indexes = IntStream.range(0, files.length).boxed().toList();
+
+        List<UploadSource> sources = uploadPipeline.processAll(indexes,
+                index -> uploadPipeline.runStage(PipelineStage.VALIDATE, () -> {
+                    listener.onStage(index, PipelineStage.VALIDATE);
+                    ImageFormat format = fileValidator.validateFileContent(files[index]);
+                    try (InputStream input = files[index].getInputStream()) {
+                        return new UploadSource(format, ContentHash.sha256Hex(input));
+                    }
+                }));
+        // Az adatbázist érintő lépések a hívó szálán (és tranzakciójában), az adatbázis-korláton belül futnak
+        Map<String, ContentBlobEntity> resizedSources = uploadPipeline.runWithDatabase(() -> {
+            fileValidator.validateFilesAlreadyExist(files);
+            return contentBlobService.findResizedContents(
+                    sources.stream().map(UploadSource::sourceHash).collect(Collectors.toSet()), width, height, encoding.signature());
+        });
+
+        // Kép átméretezése a konfigurált processzorral, közvetlenül a feltöltött tartalomból,
+        // kivéve, ha ugyanezt a képet erre a méretre és kódolással már átméreteztük
+        List<ResizedContent> contents = uploadPipeline.processAll(indexes, index -> {
+            UploadSource source = sources.get(index);
+            ContentBlobEntity known = resizedSources.get(source.sourceHash());
+            if (known != null) {
+                return new ResizedContent(null, known);
+            }
+            byte[] imageData = uploadPipeline.runStage(PipelineStage.RESIZE, () -> {
+                listener.onStage(index, PipelineStage.RESIZE);
+                ByteArrayOutputStream resized = new ByteArrayOutputStream();
+                try (InputStream input = files[index].getInputStream()) {
+                    imageProcessor.resizeImage(input, resized, width, height, source.format().getFormatName(), encoding);
+                }
+                return resized.toByteArray();
+            });
+            return new ResizedContent(imageData, ContentBlobService.newContent(imageData, encoding.outputFormat(source.format().getFormatName())));
+        });
 
-        String uploadDirPath = System.getProperty("user.dir") + File.separator + "uploads";
-        File uploadDir = new File(uploadDirPath);
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
+        // Csak a még nem tárolt tartalmakat titkosítjuk, mindegyiket egyszer
+        Map<String, Integer> firstIndexByHash = new LinkedHashMap<>();
+        for (int index : indexes) {
+            if (contents.get(index).data() != null) {
+                firstIndexByHash.putIfAbsent(contents.get(index).contentHash(), index);
+            }
         }
+        Set<String> storedHashes = uploadPipeline.runWithDatabase(
+                () -> contentBlobService.findContents(firstIndexByHash.keySet()).keySet());
+        firstIndexByHash.keySet().removeAll(storedHashes);
 
-        for (MultipartFile file : files) {
-            // Fájl mentése az uploads könyvtárba
-            File savedFile = new File(uploadDir, file.getOriginalFilename());
-            file.transferTo(savedFile);  // Mentés az eredeti fájlba
+        Queue<String> writtenKeys = new ConcurrentLinkedQueue<>();
+        try {
+            List<ContentBlobEntity> candidates = uploadPipeline.processAll(new ArrayList<>(firstIndexByHash.values()),
+                    index -> {
+                        ResizedContent content = contents.get(index);
+                        // Titkosítás közvetlenül a tárolóba
+                        String contentKey = blobStore.newKey();
+                        writtenKeys.add(contentKey);
+                        uploadPipeline.runStage(PipelineStage.ENCRYPT, () -> {
+                            listener.onStage(index, PipelineStage.ENCRYPT);
+                            blobStore.write(contentKey, blob -> {
+                                try (OutputStream output = imageCipher.encryptingStream(blob)) {
+                                    output.write(content.data());
+                                }
+                            });
+                            return contentKey;
+                        });
+                        imageMetrics.contentStored(content.data().length);
+                        content.content().setContentKey(contentKey);
+                        return content.content();
+                    });
 
-            // Kép átméretezése a konfigurált processzorral
-            File resizedFile = imageProcessor.resizeImage(savedFile, width, height, uploadDirPath + File.separator + "resized_" + file.getOriginalFilename());
+            // Mentés adatbázisba egy tranzakcióban, JDBC kötegekben
+            indexes.forEach(index -> listener.onStage(index, PipelineStage.PERSIST));
+            List<ImageEntity> imageEntities = uploadPipeline.runStage(PipelineStage.PERSIST,
+                    () -> uploadPipeline.runWithDatabase(
+                            () -> persistUpload(files, width, height, encoding, sources, resizedSources, contents, candidates)));
+            for (ImageEntity imageEntity : imageEntities) {
+                imageCache.invalidate(imageEntity.getFileName());
+                imageMetrics.encoded(imageEntity.getOriginalSize(), imageEntity.getFileSize());
+            }
 
-            // Átméretezett kép byte[]-ra alakítása
-            byte[] imageData = Files.readAllBytes(resizedFile.toPath());
+            // Ha közben egy másik feltöltés ugyanezt a tartalmat már elmentette, a saját példányunk felesleges
+            Set<String> usedKeys = imageEntities.stream().map(ImageEntity::getContentKey).collect(Collectors.toSet());
+            deleteBlobs(writtenKeys.stream().filter(key -> !usedKeys.contains(key)).toList());
+        } catch (Exception e) {
+            deleteBlobs(writtenKeys);
+            throw e;
+        }
+    }
 
-            // Titkosítás
-            byte[] encryptedData = AESUtil.encrypt(imageData);
+    /**
+     * Egy tranzakcióban felveszi a hivatkozásokat a tartalmakra, elmenti az új átméretezési
+     * eredményeket és a képek metaadatait. Ha egy párhuzamos feltöltés közben ugyanazt a
+     * tartalmat vagy átméretezést mentette el, a mentést egyszer megismétli.
+     */
+    private List<ImageEntity> persistUpload(MultipartFile[] files, int width, int height, EncodingOptions encoding,
+                                            List<UploadSource> sources,
+                                            Map<String, ContentBlobEntity> resizedSources,
+                                            List<ResizedContent> contents, List<ContentBlobEntity> candidates)
+            throws FileAlreadyExistsException {
+        Map<String, Long> references = contents.stream()
+                .collect(Collectors.groupingBy(ResizedContent::contentHash, Collectors.counting()));
+        Map<String, ContentBlobEntity> candidatesByHash = candidates.stream()
+                .collect(Collectors.toMap(ContentBlobEntity::getContentHash, Function.identity()));
+        Map<String, String> newResizes = new HashMap<>();
+        for (int index = 0; index < files.length; index++) {
+            String sourceHash = sources.get(index).sourceHash();
+            if (!resizedSources.containsKey(sourceHash)) {
+                newResizes.putIfAbsent(sourceHash, contents.get(index).contentHash());
+            }
+        }
 
-            // Mentés adatbázisba
-            ImageEntity imageEntity = new ImageEntity();
-            imageEntity.setFileName(file.getOriginalFilename());
-            imageEntity.setEncryptedData(encryptedData);
-            imageRepository.save(imageEntity);
+        Function<Boolean, TransactionCallback<List<ImageEntity>>> persist = retry -> status -> {
+            Map<String, ContentBlobEntity> stored = contentBlobService.acquire(references, candidatesByHash);
+            contentBlobService.recordResizes(newResizes, width, height, encoding.signature(), retry);
+            List<ImageEntity> imageEntities = new ArrayList<>(files.length);
+            for (int index = 0; index < files.length; index++) {
+                ContentBlobEntity content = stored.get(contents.get(index).contentHash());
+                ImageEntity imageEntity = new ImageEntity();
+                imageEntity.setFileName(files[index].getOriginalFilename());
+                imageEntity.setContentKey(content.getContentKey());
+                imageEntity.setFileSize(content.getFileSize());
+                imageEntity.setOriginalSize(files[index].getSize());
+                imageEntity.setWidth(content.getWidth());
+                imageEntity.setHeight(content.getHeight());
+                imageEntity.setContentType(content.getContentType());
+                imageEntity.setUploadedAt(Instant.now());
+                imageEntity.setContentHash(content.getContentHash());
+                imageEntity.setCrc32(content.getCrc32());
+                imageEntities.add(imageEntity);
+                // Már a mentés előtt, hogy a szűrő ne adhasson téves nemleges választ
+                fileNameFilter.add(imageEntity.getFileName());
+            }
+            return imageRepository.saveAll(imageEntities);
+        };
+        try {
+            return transactionTemplate.execute(persist.apply(false));
+        } catch (DataIntegrityViolationException e) {
+            if (isFileNameConflict(e)) {
+                // Egy párhuzamos feltöltés közben ugyanezzel a névvel mentett képet; az ismétlés sem sikerülne
+                throw fileNameConflict(files, e);
+            }
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                // Egy külső tranzakción belül a mentés nem ismételhető meg
+                throw e;
+            }
+            // Az ismétlés kihagyja a párhuzamos feltöltés által közben rögzített átméretezéseket
+            return transactionTemplate.execute(persist.apply(true));
+        }
+    }
 
-            // Eltávolítjuk az ideiglenes fájlokat
-            savedFile.delete();
-            resizedFile.delete();
+    /**
+     * @param e Egy adatintegritási hiba.
+     * @return true, ha a hibát az images.file_name egyedi indexének ütközése okozta.
+     */
+    public static boolean isFileNameConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String constraint = cause instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+            String text = constraint != null ? constraint : cause.getMessage();
+            if (text != null && text.toLowerCase(Locale.ROOT).contains(ImageEntity.FILE_NAME_CONSTRAINT)) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     * Kép letöltése fájlnév alapján az adatbázisból. A letöltött fájl titkosítása visszafejtésre kerül.
+     * A fájlnév ütközését a validáláséval azonos (409-es) hibává alakítja. Saját tranzakció esetén
+     * megkeresi az ütköző nevet; egy külső, már hibás tranzakcióban nem kérdezhetünk, ilyenkor
+     * a feltöltés összes nevét jelezzük.
+     */
+    private FileAlreadyExistsException fileNameConflict(MultipartFile[] files, DataIntegrityViolationException e) {
+        List<String> fileNames = Arrays.stream(files).map(MultipartFile::getOriginalFilename).toList();
+        String conflicting = String.join(", ", fileNames);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            Set<String> existing = new HashSet<>(imageRepository.findExistingFileNames(fileNames));
+            conflicting = fileNames.stream().filter(existing::contains).findFirst().orElse(conflicting);
+        }
+        FileAlreadyExistsException conflict = new FileAlreadyExistsException(ErrorMessages.FILE_ALREADY_EXISTS + conflicting);
+        conflict.initCause(e);
+        return conflict;
+    }
+
+    /**
+     * Egy feltöltött fájl formátuma és az eredeti tartalom hash-e.
+     */
+    private record UploadSource(ImageFormat format, String sourceHash) {
+    }
+
+    /**
+     * Egy fájl átméretezett tartalma. A data csak akkor van kitöltve, ha az átméretezés most
+     * történt; a content ilyenkor a még nem mentett, egyébként a már tárolt tartalom.
+     */
+    private record ResizedContent(byte[] data, ContentBlobEntity content) {
+
+        String contentHash() {
+            return content.getContentHash();
+        }
+    }
+
+    private void deleteBlobs(Iterable<String> keys) {
+        for (String key : keys) {
+            try {
+                blobStore.delete(key);
+            } catch (IOException | RuntimeException ignored) {
+                // A takarítás hibája nem írhatja felül az eredeti hibát
+            }
+        }
+    }
+
+    /**
+     * Kép letöltése fájlnév alapján. A metaadatok a titkosított tartalom nélkül kerülnek lekérdezésre;
+     * maga a tartalom csak a visszaadott Resource olvasásakor töltődik be a BlobStore-ból és kerül
+     * visszafejtésre, így egy feltételes kérésre (304) adott válasz nem érinti a tartalmat.
+     * A gyorsítótárban lévő képekhez nincs szükség adatbázis-lekérdezésre és visszafejtésre;
+     * a gyorsítótárba beférő képek az első olvasáskor bekerülnek.
      *
      * @param fileName A keresett fájl neve.
-     * @return A fájl titkosítatlan byte[] reprezentációja.
+     * @return A fájl metaadatai és visszafejtett tartalma.
      * @throws Exception Ha a fájl nem található, vagy hiba történik a letöltés során.
      */
     @Transactional(readOnly = true)
-    public byte[] downloadFile(String fileName) throws Exception {
-        ImageEntity imageEntity = imageRepository.findByFileName(fileName);
-        if (imageEntity == null) {
+    public ImageDownload downloadFile(String fileName) throws Exception {
+        long start = System.nanoTime();
+        CachedImage cached = imageCache.get(fileName);
+        if (cached != null) {
+            imageMetrics.downloaded(DownloadSource.CACHE, start, cached.data().length);
+            return new ImageDownload(cached.contentType(), cached.contentHash(), cached.uploadedAt(),
+                    new ByteArrayResource(cached.data()));
+        }
+
+        StoredImageInfo info = imageRepository.findInfoByFileName(fileName);
+        if (info == null) {
             throw new hu.ponte.ImageApp.exception.FileNotFoundException("Fájl nem található: " + fileName);
         }
-        return AESUtil.decrypt(imageEntity.getEncryptedData());
+        if (info.getContentKey() == null || info.getFileSize() == null) {
+            // Régi kép: a mérete nem ismert, ezért a tartalmat előre visszafejtjük
+            byte[] data;
+            try (InputStream content = openDecrypted(imageRepository.findByFileName(fileName))) {
+                data = content.readAllBytes();
+            }
+            imageMetrics.downloaded(DownloadSource.LEGACY, start, data.length);
+            return new ImageDownload(info.getContentType(), info.getContentHash(), info.getUploadedAt(), new ByteArrayResource(data));
+        }
+
+        String contentKey = info.getContentKey();
+        DecryptedImageResource resource = new DecryptedImageResource(fileName, info.getFileSize(), () -> {
+            InputStream content = imageCipher.decryptingStream(blobStore.openInput(contentKey));
+            if (!imageCache.accepts(info.getFileSize())) {
+                return content;
+            }
+            byte[] data;
+            try (content) {
+                data = content.readAllBytes();
+            }
+            imageCache.put(fileName, new CachedImage(info.getContentType(), info.getContentHash(), info.getUploadedAt(), data));
+            return new ByteArrayInputStream(data);
+        });
+        imageMetrics.downloaded(DownloadSource.BLOB, start, info.getFileSize());
+        return new ImageDownload(info.getContentType(), info.getContentHash(), info.getUploadedAt(), resource);
     }
 
     /**
-     * Visszaadja az összes feltöltött képet az adatbázisból.
+     * A képek metaadatainak egy oldala, kulcs alapú lapozással. A titkosított tartalmat nem olvassa.
      *
-     * @return Az összes kép listája.
+     * @param afterId Az előző oldal utolsó azonosítója, az első oldalnál null.
+     * @param size    Az oldal mérete.
+     * @return A képek metaadatai és a következő oldal kurzora.
+     */
+    @Transactional(readOnly = true)
+    public ImageListResponse listImages(Long afterId, int size) {
+        List<ImageMetadata> items = imageRepository.findByIdGreaterThanOrderByIdAsc(afterId != null ? afterId : 0L, Limit.of(size));
+        Long nextCursor = items.size() == size ? items.get(items.size() - 1).getId() : null;
+        return new ImageListResponse(items, nextCursor);
+    }
+
+    /**
+     * Megnyitja a kép visszafejtett tartalmát: a BlobStore-ból, vagy ha a kép még nem került
+     * áthelyezésre, a régi adatbázis oszlopból.
      */
-    public List<ImageEntity> getAllImages() {
-        return imageRepository.findAll();
+    private InputStream openDecrypted(ImageEntity imageEntity) throws IOException {
+        InputStream encrypted = imageEntity.getContentKey() != null
+                ? blobStore.openInput(imageEntity.getContentKey())
+                : new ByteArrayInputStream(imageEntity.getEncryptedData());
+        return imageCipher.decryptingStream(encrypted);
     }
 }
@@ -0,0 +1,211 @@
+package hu.ponte.ImageApp.service;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.entity.ImageVariantEntity;
+import hu.ponte.ImageApp.pipeline.PipelineStage;
+import hu.ponte.ImageApp.pipeline.UploadPipeline;
+import hu.ponte.ImageApp.processor.EncodingOptions;
+import hu.ponte.ImageApp.processor.ImageProcessor;
+import hu.ponte.ImageApp.repository.ImageRepository;
+import hu.ponte.ImageApp.repository.ImageVariantRepository;
+import hu.ponte.ImageApp.repository.StoredImageInfo;
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.util.ContentHash;
+import hu.ponte.ImageApp.util.ErrorMessages;
+import hu.ponte.ImageApp.validation.ImageFormat;
+import hu.ponte.ImageApp.validation.ImageProbe;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A tárolt képek igény szerinti, más méretű változatait kezeli. Egy változat az első kéréskor
+ * készül el a konfigurált ImageProcessorral, majd titkosítva a BlobStore-ba kerül, és a további
+ * kérések már onnan kapják. A változatok az alapértelmezett kódolással készülnek. Az ugyanarra a változatra egyszerre érkező kérések közül csak az
+ * első végzi el az átméretezést, a többi annak eredményét várja meg. A változat nem lehet nagyobb
+ * a tárolt képnél (nagyítás nem történik; a kért méret egy keret, amelybe a kép arányosan belefér), és ha az "image.variant.allowed-sizes" meg van adva,
+ * csak az ott felsorolt méretek kérhetők, így a kliens nem tölthet meg a tárolót tetszőleges méretekkel.
+ */
+@Service
+public class VariantService {
+
+    private final ImageService imageService;
+    private final ImageRepository imageRepository;
+    private final ImageVariantRepository variantRepository;
+    private final ImageProcessor imageProcessor;
+    private final UploadPipeline uploadPipeline;
+    private final ImageCipher imageCipher;
+    private final BlobStore blobStore;
+    private final EncodingOptions defaultEncoding;
+    private final Map<VariantKey, CompletableFuture<ImageVariantEntity>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${image.max.width}")
+    private int maxWidth;
+
+    @Value("${image.max.height}")
+    private int maxHeight;
+
+    @Value("${image.variant.allowed-sizes:}")
+    private List<String> allowedSizes;
+
+    @Autowired
+    public VariantService(ImageService imageService, ImageRepository imageRepository, ImageVariantRepository variantRepository,
+                          ImageProcessor imageProcessor, UploadPipeline uploadPipeline, ImageCipher imageCipher, BlobStore blobStore,
+                          EncodingOptions defaultEncoding) {
+        this.imageService = imageService;
+        this.imageRepository = imageRepository;
+        this.variantRepository = variantRepository;
+        this.imageProcessor = imageProcessor;
+        this.uploadPipeline = uploadPipeline;
+        this.imageCipher = imageCipher;
+        this.blobStore = blobStore;
+        this.defaultEncoding = defaultEncoding;
+    }
+
+    /**
+     * Egy kép adott méretű változatának letöltése; ha a változat még nem létezik, elkészíti.
+     *
+     * @param fileName Az alapkép fájlneve.
+     * @param width    A kért szélesség.
+     * @param height   A kért magasság.
+     * @return A változat metaadatai és visszafejtett tartalma.
+     * @throws Exception Ha az alapkép nem található, vagy a változat nem készíthető el.
+     */
+    public ImageDownload downloadVariant(String fileName, int width, int height) throws Exception {
+        if (width < 1 || height < 1 || width > maxWidth || height > maxHeight) {
+            throw new IllegalArgumentException(String.format(ErrorMessages.IMAGE_SIZE_EXCEEDS_LIMIT, maxWidth, maxHeight));
+        }
+        if (!allowedSizes.isEmpty() && allowedSizes.stream().noneMatch(size -> size.trim().equalsIgnoreCase(width + "x" + height))) {
+            throw new IllegalArgumentException(String.format(ErrorMessages.VARIANT_SIZE_NOT_ALLOWED, String.join(", ", allowedSizes)));
+        }
+        StoredImageInfo base = imageRepository.findInfoByFileName(fileName);
+        if (base == null) {
+            throw new hu.ponte.ImageApp.exception.FileNotFoundException("Fájl nem található: " + fileName);
+        }
+        if (base.getWidth() != null && base.getHeight() != null) {
+            checkWithinBase(width, height, base.getWidth(), base.getHeight());
+        }
+
+        ImageVariantEntity variant = variantRepository.findByImageIdAndWidthAndHeight(base.getId(), width, height);
+        if (variant == null) {
+            variant = createCoalesced(new VariantKey(base.getId(), width, height), fileName);
+        }
+
+        String contentKey = variant.getContentKey();
+        DecryptedImageResource resource = new DecryptedImageResource(fileName, variant.getFileSize(),
+                () -> imageCipher.decryptingStream(blobStore.openInput(contentKey)));
+        return new ImageDownload(variant.getContentType(), variant.getContentHash(), variant.getCreatedAt(), resource);
+    }
+
+    /**
+     * Elkészíti a változatot, vagy ha ugyanezt egy másik kérés már készíti, megvárja annak eredményét.
+     */
+    private ImageVariantEntity createCoalesced(VariantKey key, String fileName) throws Exception {
+        CompletableFuture<ImageVariantEntity> created = new CompletableFuture<>();
+        CompletableFuture<ImageVariantEntity> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            ImageVariantEntity variant = create(key, fileName);
+            created.complete(variant);
+            return variant;
+        } catch (Exception e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private ImageVariantEntity create(VariantKey key, String fileName) throws Exception {
+        ImageDownload base = imageService.downloadFile(fileName);
+        byte[] baseData;
+        try (InputStream content = base.content().getInputStream()) {
+            baseData = content.readAllBytes();
+        }
+        // A tárolt típus a feltöltéskor választott kimeneti formátum; a régi képeknél a tartalomból ismerjük fel
+        ImageFormat detected = ImageProbe.detectFormat(new ByteArrayInputStream(baseData));
+        String format = detected != null ? detected.getFormatName() : EncodingOptions.formatOfMimeType(base.contentType());
+        if (format == null) {
+            throw new IOException("Unsupported stored image format: " + fileName);
+        }
+        String outputFormat = defaultEncoding.outputFormat(format);
+        // A méretek nélkül tárolt régi képeknél a tartalom fejlécéből ellenőrizzük
+        Dimension baseSize = ImageProbe.readDimensions(new ByteArrayInputStream(baseData));
+        checkWithinBase(key.width(), key.height(), baseSize.width, baseSize.height);
+
+        byte[] variantData = uploadPipeline.runStage(PipelineStage.RESIZE, () -> {
+            ByteArrayOutputStream resized = new ByteArrayOutputStream();
+            imageProcessor.resizeImage(new ByteArrayInputStream(baseData), resized, key.width(), key.height(), format, defaultEncoding);
+            return resized.toByteArray();
+        });
+
+        String contentKey = blobStore.newKey();
+        try {
+            uploadPipeline.runStage(PipelineStage.ENCRYPT, () -> {
+                blobStore.write(contentKey, blob -> {
+                    try (OutputStream output = imageCipher.encryptingStream(blob)) {
+                        output.write(variantData);
+                    }
+                });
+                return contentKey;
+            });
+
+            ImageVariantEntity variant = new ImageVariantEntity();
+            variant.setImageId(key.imageId());
+            variant.setWidth(key.width());
+            variant.setHeight(key.height());
+            variant.setContentKey(contentKey);
+            variant.setFileSize((long) variantData.length);
+            variant.setContentType(EncodingOptions.mimeType(outputFormat));
+            variant.setContentHash(ContentHash.sha256Hex(variantData));
+            variant.setCreatedAt(Instant.now());
+            return variantRepository.save(variant);
+        } catch (DataIntegrityViolationException e) {
+            // Egy másik példány közben már elmentette ugyanezt a változatot
+            blobStore.delete(contentKey);
+            ImageVariantEntity existing = variantRepository.findByImageIdAndWidthAndHeight(key.imageId(), key.width(), key.height());
+            if (existing == null) {
+                throw e;
+            }
+            return existing;
+        } catch (Exception e) {
+            blobStore.delete(contentKey);
+            throw e;
+        }
+    }
+
+    /**
+     * Az átméretezés a képet arányosan a kért keretbe illeszti, így az eredmény mérete a két arány
+     * közül a kisebbtől függ: csak az a kérés hibás, amelynél ez is nagyítás lenne (pl. egy 1000x800
+     * pixeles képből a 2000x100-as keret 125x100 pixeles változatot ad, ez megengedett).
+     */
+    private static void checkWithinBase(int width, int height, int baseWidth, int baseHeight) {
+        if (Math.min((double) width / baseWidth, (double) height / baseHeight) > 1) {
+            throw new IllegalArgumentException(String.format(ErrorMessages.VARIANT_SIZE_EXCEEDS_IMAGE, baseWidth, baseHeight));
+        }
+    }
+
+    private record VariantKey(long imageId, int width, int height) {
+    }
+}
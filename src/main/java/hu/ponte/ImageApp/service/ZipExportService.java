@@ -0,0 +1,206 @@
+package hu.ponte.ImageApp.service;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.metrics.ImageMetrics;
+import hu.ponte.ImageApp.repository.ImageRepository;
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.util.ContentHash;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * A tárolt képek ZIP exportja. A kiválasztott képeket egyetlen, szerveroldali kurzorral olvasott
+ * lekérdezés adja; a visszafejtés korlátos szálkészleten, több képpel előre fut, a bejegyzések
+ * pedig a lekérdezés sorrendjében kerülnek az archívumba. A JPEG és PNG képek már tömörítettek,
+ * ezért a bejegyzések tömörítés nélkül (STORED) íródnak; a fejlécükhöz szükséges CRC-32 a
+ * feltöltéskor tárolásra kerül, és a ZipOutputStream a kiírt tartalommal össze is veti.
+ */
+@Service
+public class ZipExportService {
+
+    private final BlobStore blobStore;
+    private final ImageCipher imageCipher;
+    private final ImageMetrics imageMetrics;
+    private final ExecutorService decryptExecutor;
+    private final int readAhead;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param blobStore      A titkosított képtartalmakat tároló réteg.
+     * @param imageCipher    A képek visszafejtését végző komponens.
+     * @param imageMetrics   A ZIP export mérőszámai.
+     * @param decryptThreads A visszafejtő szálak száma (0 = a processzormagok száma).
+     * @param readAhead      Exportonként legfeljebb ennyi kép visszafejtése futhat előre (0 = a szálak számának kétszerese).
+     */
+    @Autowired
+    public ZipExportService(BlobStore blobStore, ImageCipher imageCipher, ImageMetrics imageMetrics,
+                            @Value("${image.zip.decrypt-threads:0}") int decryptThreads,
+                            @Value("${image.zip.read-ahead:0}") int readAhead) {
+        this.blobStore = blobStore;
+        this.imageCipher = imageCipher;
+        this.imageMetrics = imageMetrics;
+        int threads = decryptThreads > 0 ? decryptThreads : Runtime.getRuntime().availableProcessors();
+        this.readAhead = readAhead > 0 ? readAhead : threads * 2;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.decryptExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "zip-decrypt-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A kiválasztott képeket visszafejtve, ZIP formátumban a megadott kimenetre írja, azonosító
+     * szerinti sorrendben. A memóriában egyszerre legfeljebb "image.zip.read-ahead" visszafejtett
+     * kép van, így a memóriahasználat nem függ a kiválasztott képek számától.
+     *
+     * @param selection    A kiválasztott képek.
+     * @param outputStream A kimenet, ahová a ZIP tartalom kerül (nem kerül lezárásra).
+     * @throws IOException Ha a visszafejtés vagy az írás sikertelen.
+     */
+    @Transactional(readOnly = true)
+    public void writeImagesAsZip(ZipSelection selection, OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        ZipOutputStream zipOut = new ZipOutputStream(outputStream);
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        try (Stream<ImageEntity> images = select(selection)) {
+            Iterator<ImageEntity> iterator = images.iterator();
+            while (iterator.hasNext()) {
+                ImageEntity image = iterator.next();
+                pending.addLast(decryptAsync(image));
+                entityManager.detach(image);
+                if (pending.size() >= readAhead) {
+                    writeEntry(zipOut, pending.removeFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeEntry(zipOut, pending.removeFirst());
+            }
+        } finally {
+            // Hiba esetén a még futó visszafejtésekre nincs szükség
+            pending.forEach(entry -> entry.content().cancel(true));
+        }
+        zipOut.finish();
+        imageMetrics.zipExported(start);
+    }
+
+    /**
+     * A kiválasztott képek egyetlen lekérdezéssel, azonosító szerinti sorrendben, szerveroldali
+     * kurzorral olvasva (lásd {@link ImageRepository#STREAM_FETCH_SIZE}).
+     */
+    private Stream<ImageEntity> select(ZipSelection selection) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ImageEntity> query = builder.createQuery(ImageEntity.class);
+        Root<ImageEntity> image = query.from(ImageEntity.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (!selection.fileNames().isEmpty()) {
+            predicates.add(image.get("fileName").in(selection.fileNames()));
+        }
+        if (selection.fromId() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(image.get("id"), selection.fromId()));
+        }
+        if (selection.toId() != null) {
+            predicates.add(builder.lessThanOrEqualTo(image.get("id"), selection.toId()));
+        }
+        if (selection.from() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(image.get("uploadedAt"), selection.from()));
+        }
+        if (selection.to() != null) {
+            predicates.add(builder.lessThan(image.get("uploadedAt"), selection.to()));
+        }
+        query.select(image).where(predicates.toArray(new Predicate[0])).orderBy(builder.asc(image.get("id")));
+        return entityManager.createQuery(query)
+                .setHint(HINT_FETCH_SIZE, ImageRepository.STREAM_FETCH_SIZE)
+                .setHint(HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * Elindítja a kép visszafejtését a szálkészleten. A feladat csak a tartalom kulcsát (vagy a régi
+     * képeknél a titkosított adatot) kapja meg, az adatbázist nem éri el.
+     */
+    private PendingEntry decryptAsync(ImageEntity image) {
+        String contentKey = image.getContentKey();
+        byte[] encryptedData = contentKey == null ? image.getEncryptedData() : null;
+        Future<byte[]> content = decryptExecutor.submit(() -> {
+            InputStream encrypted = contentKey != null
+                    ? blobStore.openInput(contentKey)
+                    : new ByteArrayInputStream(encryptedData);
+            try (InputStream decrypted = imageCipher.decryptingStream(encrypted)) {
+                return decrypted.readAllBytes();
+            }
+        });
+        return new PendingEntry(image.getFileName(), image.getCrc32(), content);
+    }
+
+    private void writeEntry(ZipOutputStream zipOut, PendingEntry entry) throws IOException {
+        byte[] data;
+        try {
+            data = entry.content().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("ZIP export interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Could not decrypt " + entry.fileName(), e.getCause());
+        }
+
+        ZipEntry zipEntry = new ZipEntry(entry.fileName());
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(data.length);
+        zipEntry.setCompressedSize(data.length);
+        // A régi képeknél a CRC-32 nincs tárolva, ilyenkor a visszafejtett tartalomból számoljuk
+        zipEntry.setCrc(entry.crc32() != null ? entry.crc32() : ContentHash.crc32(data));
+        zipOut.putNextEntry(zipEntry);
+        zipOut.write(data);
+        zipOut.closeEntry();
+        imageMetrics.zipEntryWritten(data.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decryptExecutor.shutdownNow();
+    }
+
+    /**
+     * Egy archívumba kerülő kép, amelynek a visszafejtése még folyamatban lehet.
+     */
+    private record PendingEntry(String fileName, Long crc32, Future<byte[]> content) {
+    }
+}
@@ -0,0 +1,34 @@
+package hu.ponte.ImageApp.service;
+
+import hu.ponte.ImageApp.util.ErrorMessages;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A ZIP exportba kerülő képek kiválasztása. A megadott feltételek egyszerre érvényesek;
+ * ha egyik sincs megadva, minden kép az exportba kerül.
+ *
+ * @param fileNames A kiválasztott fájlnevek (null vagy üres lista esetén nincs névszűrés).
+ * @param fromId    A legkisebb azonosító (a határ is beletartozik).
+ * @param toId      A legnagyobb azonosító (a határ is beletartozik).
+ * @param from      A feltöltés legkorábbi időpontja (a határ is beletartozik).
+ * @param to        A feltöltés legkésőbbi időpontja (a határ már nem tartozik bele).
+ */
+public record ZipSelection(List<String> fileNames, Long fromId, Long toId, Instant from, Instant to) {
+
+    /**
+     * Minden kép.
+     */
+    public static final ZipSelection ALL = new ZipSelection(null, null, null, null, null);
+
+    public ZipSelection {
+        fileNames = fileNames == null ? List.of() : List.copyOf(fileNames);
+        if (fromId != null && toId != null && fromId > toId) {
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ZIP_SELECTION);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ZIP_SELECTION);
+        }
+    }
+}
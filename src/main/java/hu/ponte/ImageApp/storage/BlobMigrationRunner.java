@@ -0,0 +1,232 @@
+package hu.ponte.ImageApp.storage;
+
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.entity.ContentBlobEntity;
+import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.processor.EncodingOptions;
+import hu.ponte.ImageApp.repository.ImageRepository;
+import hu.ponte.ImageApp.service.ContentBlobService;
+import hu.ponte.ImageApp.validation.ImageFormat;
+import hu.ponte.ImageApp.validation.ImageProbe;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Induláskor átalakítja a régi formátumban tárolt képeket: az images.encrypted_data oszlopban
+ * lévőket, és a tartalom hash-e nélkül, régi (AES/ECB) titkosítással a BlobStore-ba került
+ * képeket. A sorokat kötegenként, kötegenként külön tranzakcióban dolgozza fel: a tartalmat
+ * visszafejti, az ImageCipher-rel újra titkosítva a tárolóba írja (az azonos tartalmú képek a
+ * feltöltéshez hasonlóan egy közös tartalomra hivatkoznak), kitölti a méretet, a hash-t, a CRC-32
+ * ellenőrzőösszeget és a típust, majd kiüríti az oszlopot. PostgreSQL-ben az oszlop mögötti large
+ * objectet is felszabadítja (lo_unlink). A régi tároló tartalmak a tranzakció sikeres lezárása után,
+ * egy visszagördülő köteg már kiírt tartalmai pedig a visszagördülés után törlődnek.
+ * Csak akkor fut, ha a storage.blob.migrate-on-startup értéke true.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.blob.migrate-on-startup", havingValue = "true")
+public class BlobMigrationRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobMigrationRunner.class);
+
+    private final ImageRepository imageRepository;
+    private final ContentBlobService contentBlobService;
+    private final BlobStore blobStore;
+    private final ImageCipher imageCipher;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public BlobMigrationRunner(ImageRepository imageRepository, ContentBlobService contentBlobService,
+                               BlobStore blobStore, ImageCipher imageCipher, TransactionTemplate transactionTemplate,
+                               JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.imageRepository = imageRepository;
+        this.contentBlobService = contentBlobService;
+        this.blobStore = blobStore;
+        this.imageCipher = imageCipher;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        boolean largeObjects = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+        int migrated = 0;
+        int batchSize;
+        do {
+            batchSize = transactionTemplate.execute(status -> migrateBatch(largeObjects));
+            migrated += batchSize;
+        } while (batchSize > 0);
+        log.info("Migrated {} legacy images to ImageCipher encrypted blob store content", migrated);
+    }
+
+    private int migrateBatch(boolean largeObjects) {
+        List<ImageEntity> images = imageRepository.findTop20ByContentHashIsNullOrderByIdAsc();
+        if (images.isEmpty()) {
+            return 0;
+        }
+        List<String> writtenKeys = new ArrayList<>();
+        Set<String> obsoleteKeys = new HashSet<>();
+        Set<String> usedKeys = new HashSet<>();
+        cleanUpAfterCompletion(writtenKeys, obsoleteKeys, usedKeys);
+
+        Map<ImageEntity, ContentBlobEntity> contents = new LinkedHashMap<>();
+        Map<String, byte[]> plainByHash = new HashMap<>();
+        for (ImageEntity image : images) {
+            try {
+                byte[] data = readPlain(image);
+                ContentBlobEntity content = ContentBlobService.newContent(data, formatOf(image, data));
+                contents.put(image, content);
+                plainByHash.putIfAbsent(content.getContentHash(), data);
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException("Failed to migrate image " + image.getId() + " to the blob store", e);
+            }
+            if (image.getContentKey() != null) {
+                obsoleteKeys.add(image.getContentKey());
+            }
+        }
+
+        // Csak a még nem tárolt tartalmakat írjuk ki, ImageCipher-rel titkosítva
+        Map<String, Long> references = contents.values().stream()
+                .collect(Collectors.groupingBy(ContentBlobEntity::getContentHash, Collectors.counting()));
+        Set<String> stored = contentBlobService.findContents(references.keySet()).keySet();
+        Map<String, ContentBlobEntity> candidates = new HashMap<>();
+        for (ContentBlobEntity content : contents.values()) {
+            String contentHash = content.getContentHash();
+            if (stored.contains(contentHash) || candidates.containsKey(contentHash)) {
+                continue;
+            }
+            String key = blobStore.newKey();
+            try {
+                byte[] data = plainByHash.get(contentHash);
+                blobStore.write(key, blob -> {
+                    try (OutputStream output = imageCipher.encryptingStream(blob)) {
+                        output.write(data);
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write migrated content " + contentHash + " to the blob store", e);
+            }
+            writtenKeys.add(key);
+            content.setContentKey(key);
+            candidates.put(contentHash, content);
+        }
+        Map<String, ContentBlobEntity> acquired = contentBlobService.acquire(references, candidates);
+
+        if (largeObjects) {
+            unlinkLargeObjects(images);
+        }
+        for (Map.Entry<ImageEntity, ContentBlobEntity> entry : contents.entrySet()) {
+            ImageEntity image = entry.getKey();
+            ContentBlobEntity content = acquired.get(entry.getValue().getContentHash());
+            usedKeys.add(content.getContentKey());
+            image.setContentKey(content.getContentKey());
+            image.setFileSize(content.getFileSize());
+            image.setContentHash(content.getContentHash());
+            image.setCrc32(content.getCrc32());
+            image.setContentType(content.getContentType());
+            if (image.getWidth() == null || image.getHeight() == null) {
+                image.setWidth(content.getWidth());
+                image.setHeight(content.getHeight());
+            }
+            image.setEncryptedData(null);
+        }
+        imageRepository.saveAll(images);
+        return images.size();
+    }
+
+    /**
+     * A kép visszafejtett tartalma: az oszlopból, vagy ha a kép korábban már titkosításváltás nélkül
+     * a tárolóba került, onnan.
+     */
+    private byte[] readPlain(ImageEntity image) throws IOException {
+        if (image.getEncryptedData() != null) {
+            return imageCipher.decrypt(image.getEncryptedData());
+        }
+        try (InputStream content = imageCipher.decryptingStream(blobStore.openInput(image.getContentKey()))) {
+            return content.readAllBytes();
+        }
+    }
+
+    /**
+     * A formátum a tartalom első bájtjai alapján, ha az nem ismerhető fel, a tárolt típus alapján.
+     */
+    private static String formatOf(ImageEntity image, byte[] data) throws IOException {
+        ImageFormat detected = ImageProbe.detectFormat(new ByteArrayInputStream(data));
+        String format = detected != null ? detected.getFormatName() : EncodingOptions.formatOfMimeType(image.getContentType());
+        if (format == null) {
+            throw new IOException("Unknown image format");
+        }
+        return format;
+    }
+
+    /**
+     * Felszabadítja az images.encrypted_data oszlop mögötti PostgreSQL large objecteket. Az oszlop
+     * kiürítése csak a hivatkozást törli, a large object (és a helye) e nélkül megmaradna. A művelet
+     * a köteg tranzakciójának része, így visszagördüléskor a large objectek is megmaradnak.
+     */
+    private void unlinkLargeObjects(List<ImageEntity> images) {
+        List<Long> ids = images.stream().filter(image -> image.getEncryptedData() != null).map(ImageEntity::getId).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query("SELECT lo_unlink(encrypted_data) FROM images WHERE encrypted_data IS NOT NULL AND id IN ("
+                + placeholders + ")", resultSet -> {
+        }, ids.toArray());
+    }
+
+    /**
+     * Sikeres lezárás után törli a tárolóból a már nem hivatkozott régi tartalmakat és a közben egy
+     * párhuzamos feltöltés által tárolt tartalom miatt feleslegessé vált kiírt tartalmakat;
+     * visszagördüléskor a köteg összes kiírt tartalmát.
+     */
+    private void cleanUpAfterCompletion(List<String> writtenKeys, Set<String> obsoleteKeys, Set<String> usedKeys) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                Set<String> keys = new HashSet<>();
+                if (status == STATUS_COMMITTED) {
+                    keys.addAll(writtenKeys);
+                    keys.addAll(obsoleteKeys);
+                    keys.removeAll(usedKeys);
+                } else if (status == STATUS_ROLLED_BACK) {
+                    keys.addAll(writtenKeys);
+                }
+                for (String key : keys) {
+                    try {
+                        blobStore.delete(key);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete blob {} after a migration batch", key, e);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package hu.ponte.ImageApp.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Egy tartalom írására szolgáló stream. A sikeres lezárás (close) véglegesíti a tartalmat;
+ * az abort a tartalmat eldobja, és a későbbi lezárás sem teszi olvashatóvá.
+ */
+public abstract class BlobOutputStream extends OutputStream {
+
+    /**
+     * Eldobja az eddig írt tartalmat. Sikertelen írás után kell hívni a lezárás helyett.
+     *
+     * @throws IOException Ha az ideiglenes tartalom nem törölhető.
+     */
+    public abstract void abort() throws IOException;
+}
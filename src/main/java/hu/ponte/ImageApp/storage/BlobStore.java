@@ -0,0 +1,95 @@
+package hu.ponte.ImageApp.storage;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * A titkosított képtartalmak tárolására szolgáló réteg. Az adatbázis csak a metaadatokat és
+ * a tartalom kulcsát tárolja, maguk a bájtok egy BlobStore implementációban vannak.
+ */
+public interface BlobStore {
+
+    /**
+     * @return Egy új, egyedi tartalomkulcs.
+     */
+    default String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Megnyit egy kimenetet a megadott kulcsú tartalom írásához. A tartalom csak a stream
+     * sikeres lezárása után válik olvashatóvá; sikertelen írás után a {@link BlobOutputStream#abort()}
+     * eldobja. A legtöbb hívónak a {@link #write(String, BlobWriter)} a kényelmesebb.
+     *
+     * @param key A tartalom kulcsa.
+     * @return A tartalom írására szolgáló stream.
+     * @throws IOException Ha a tartalom nem hozható létre.
+     */
+    BlobOutputStream openOutput(String key) throws IOException;
+
+    /**
+     * Megírja a tartalmat a megadott írófüggvénnyel. A tartalom csak akkor válik olvashatóvá, ha
+     * az írófüggvény hiba nélkül tér vissza; hiba esetén eldobjuk. Az írófüggvény lezárhatja a kapott
+     * streamet (pl. egy rá épülő titkosító stream lezárásával), ez még nem véglegesíti a tartalmat.
+     *
+     * @param key    A tartalom kulcsa.
+     * @param writer A tartalmat a kapott streamre író függvény.
+     * @throws IOException Ha az írás sikertelen.
+     */
+    default void write(String key, BlobWriter writer) throws IOException {
+        BlobOutputStream output = openOutput(key);
+        try {
+            writer.writeTo(new FilterOutputStream(output) {
+                @Override
+                public void write(byte[] data, int offset, int length) throws IOException {
+                    out.write(data, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // A véglegesítés csak a sikeres írás után, a write metódusban történik
+                    flush();
+                }
+            });
+        } catch (IOException | RuntimeException | Error e) {
+            output.abort();
+            throw e;
+        }
+        output.close();
+    }
+
+    /**
+     * Megnyitja a megadott kulcsú tartalmat olvasásra.
+     *
+     * @param key A tartalom kulcsa.
+     * @return A tartalom streamje.
+     * @throws IOException Ha a tartalom nem létezik vagy nem olvasható.
+     */
+    InputStream openInput(String key) throws IOException;
+
+    /**
+     * @param key A tartalom kulcsa.
+     * @return A tárolt tartalom mérete bájtban.
+     * @throws IOException Ha a tartalom nem létezik.
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Törli a megadott kulcsú tartalmat; ha nem létezik, nem történik semmi.
+     *
+     * @param key A tartalom kulcsa.
+     * @throws IOException Ha a törlés sikertelen.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Egy tartalmat a kapott streamre író függvény.
+     */
+    @FunctionalInterface
+    interface BlobWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,160 @@
+package hu.ponte.ImageApp.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helyi könyvtárban tároló BlobStore. A tartalmak a kulcs első karakterei alapján
+ * alkönyvtárakba kerülnek, az írás ideiglenes fájlba történik, amelyet lezáráskor atomikusan
+ * a helyére mozgatunk, megszakításkor (abort) pedig törlünk. Az olvasás FileChannelen keresztül történik; a megadott méret feletti
+ * fájlokat memóriába leképezve (memory-mapped) olvassuk, így azok nem kerülnek át
+ * a JVM heapjén lévő puffereken.
+ */
+public class LocalDirectoryBlobStore implements BlobStore {
+
+    private final Path root;
+    private final long mmapThreshold;
+
+    /**
+     * @param root          A tároló gyökérkönyvtára.
+     * @param mmapThreshold Az ennél nagyobb fájlok memóriába leképezve kerülnek olvasásra.
+     * @throws IOException Ha a könyvtár nem hozható létre.
+     */
+    public LocalDirectoryBlobStore(Path root, long mmapThreshold) throws IOException {
+        this.root = Files.createDirectories(root.toAbsolutePath().normalize());
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    @Override
+    public BlobOutputStream openOutput(String key) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+        OutputStream file = Files.newOutputStream(temp);
+        return new BlobOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                file.write(b);
+            }
+
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                file.write(data, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                file.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    file.close();
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            @Override
+            public void abort() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    file.close();
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream openInput(String key) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= mmapThreshold && size <= Integer.MAX_VALUE) {
+                // A leképezés a csatorna lezárása után is érvényes marad
+                return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        return Channels.newInputStream(FileChannel.open(resolve(key), StandardOpenOption.READ));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        if (key.length() < 4 || !key.matches("[A-Za-z0-9-]+")) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    /**
+     * Memóriába leképezett fájl olvasása InputStreamként.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.nio.file.Paths;
 /**
  * Utility osztály AES titkosításhoz és visszafejtéshez.
  * Kezeli a titkosítási kulcs generálását, betöltését, valamint a titkosítást és visszafejtést.
+ * A képek titkosítására az {@link hu.ponte.ImageApp.crypto.ImageCipher} komponens szolgál;
+ * ez az osztály a kulcskezelés miatt maradt meg.
  */
 public class AESUtil {
 
@@ -53,7 +55,9 @@ public class AESUtil {
      * @param data A titkosítandó adatok byte tömbje.
      * @return A titkosított byte tömb.
      * @throws Exception ha a titkosítás sikertelen.
+     * @deprecated Helyette az {@link hu.ponte.ImageApp.crypto.ImageCipher#encrypt(byte[])} használandó.
      */
+    @Deprecated
     public static byte[] encrypt(byte[] data) throws Exception {
         Cipher cipher = Cipher.getInstance(AES);
         cipher.init(Cipher.ENCRYPT_MODE, loadSecretKey());
@@ -66,7 +70,10 @@ public class AESUtil {
      * @param data A visszafejtendő adatok byte tömbje.
      * @return A visszafejtett byte tömb.
      * @throws Exception ha a visszafejtés sikertelen.
+     * @deprecated Helyette az {@link hu.ponte.ImageApp.crypto.ImageCipher#decrypt(byte[])} használandó,
+     * amely a régi formátumot is visszafejti.
      */
+    @Deprecated
     public static byte[] decrypt(byte[] data) throws Exception {
         Cipher cipher = Cipher.getInstance(AES);
         cipher.init(Cipher.DECRYPT_MODE, loadSecretKey());
@@ -0,0 +1,58 @@
+package hu.ponte.ImageApp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Képtartalmak hash-ének és ellenőrzőösszegének számítása.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * @param data A tartalom.
+     * @return A tartalom SHA-256 hash-e hexadecimális formában.
+     */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    /**
+     * @param input A tartalom; a metódus végigolvassa, de nem zárja le.
+     * @return A tartalom SHA-256 hash-e hexadecimális formában.
+     * @throws IOException Ha a tartalom olvasása sikertelen.
+     */
+    public static String sha256Hex(InputStream input) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param data A tartalom.
+     * @return A tartalom CRC-32 ellenőrzőösszege, ahogy a ZIP fájlok tárolják.
+     */
+    public static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,6 +2,18 @@ package hu.ponte.ImageApp.util;
 
 public class ErrorMessages {
     public static final String FILE_ALREADY_EXISTS = "A fájl már létezik: ";
+    public static final String CONCURRENT_MODIFICATION = "Egy párhuzamos kérés ütköző adatot mentett, próbálja újra.";
     public static final String IMAGE_SIZE_EXCEEDS_LIMIT = "A kép mérete nem lehet nagyobb, mint %dx%d pixel.";
     public static final String INVALID_FILE_TYPE = "Csak PNG és JPG fájlokat fogadunk el.";
+    public static final String VARIANT_SIZE_EXCEEDS_IMAGE = "A változat mérete nem lehet nagyobb a képnél (%dx%d pixel).";
+    public static final String VARIANT_SIZE_NOT_ALLOWED = "A változat mérete nem engedélyezett, a választható méretek: %s.";
+    public static final String VARIANT_SIZE_REQUIRED = "A változat szélességét (w) és magasságát (h) együtt kell megadni.";
+    public static final String INVALID_PAGE_SIZE = "Az oldalméret 1 és %d között lehet.";
+    public static final String UPLOAD_QUEUE_FULL = "A feltöltési sor megtelt, próbálja újra később.";
+    public static final String PROCESSING_CAPACITY_EXCEEDED = "A képfeldolgozás kapacitása megtelt, próbálja újra később.";
+    public static final String JOB_NOT_FOUND = "A feladat nem található: ";
+    public static final String INVALID_ENCODING_QUALITY = "A minőség 1 és 100 között lehet.";
+    public static final String INVALID_PNG_COMPRESSION_LEVEL = "A PNG tömörítési szint 0 és 9 között lehet.";
+    public static final String INVALID_ZIP_SELECTION = "A kiválasztás kezdete nem lehet a vége után.";
+    public static final String UNSUPPORTED_OUTPUT_FORMAT = "A kimeneti formátum nem támogatott: ";
 }
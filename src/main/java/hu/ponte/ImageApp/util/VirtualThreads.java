@@ -0,0 +1,72 @@
+package hu.ponte.ImageApp.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtuális szálas végrehajtók létrehozása. Az alkalmazás Java 17-re fordul, ezért a Java 21
+ * virtuális szálas API-ját futásidőben, reflexióval érjük el; régebbi JVM-en nincs virtuális szál.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR = lookupExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true, ha a futtató JVM támogatja a virtuális szálakat (Java 21 vagy újabb).
+     */
+    public static boolean isAvailable() {
+        return NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Olyan végrehajtót ad, amely minden feladatot egy új, megnevezett virtuális szálon futtat.
+     * A végrehajtó nem korlátozza a párhuzamosan futó feladatok számát; a szűkös erőforrásokat
+     * a hívónak kell szemaforral védenie.
+     *
+     * @param namePrefix A szálak nevének előtagja (a név végére sorszám kerül).
+     * @return A végrehajtó, vagy üres, ha a JVM nem támogatja a virtuális szálakat.
+     */
+    public static Optional<ExecutorService> newThreadPerTaskExecutor(String namePrefix) {
+        if (NEW_THREAD_PER_TASK_EXECUTOR == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(namePrefix));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * A {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())}
+     * hívásnak megfelelő függvény, ha a JVM ismeri.
+     */
+    private static MethodHandle lookupExecutorFactory() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builderClass));
+            MethodHandle name = lookup.findVirtual(builderClass, "name",
+                    MethodType.methodType(builderClass, String.class, long.class));
+            MethodHandle factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+            MethodHandle executor = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+
+            // prefix -> ofVirtual().name(prefix, 1).factory() -> newThreadPerTaskExecutor(factory)
+            MethodHandle namedBuilder = MethodHandles.insertArguments(
+                    MethodHandles.collectArguments(name, 0, ofVirtual), 1, 1L);
+            MethodHandle threadFactory = MethodHandles.filterReturnValue(namedBuilder, factory);
+            return MethodHandles.filterReturnValue(threadFactory, executor);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package hu.ponte.ImageApp.validation;
+
+import hu.ponte.ImageApp.repository.ImageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * A tárolt képek fájlneveinek memóriabeli Bloom-szűrője. Ha a szűrő szerint egy név biztosan nem
+ * szerepel, a létezés ellenőrzéséhez nem kell az adatbázishoz fordulni; egyébként (és amíg a szűrő
+ * induláskori feltöltése be nem fejeződött) az adatbázis dönt. A szűrő csak tévesen pozitív lehet:
+ * a neveket még a mentés előtt felvesszük, így egy sikertelen mentés legfeljebb egy felesleges
+ * lekérdezést okoz. Egy másik alkalmazáspéldányban feltöltött nevet a szűrő nem ismer; ezt az
+ * images.file_name egyedi indexe fogja meg.
+ */
+@Component
+public class FileNameFilter implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(FileNameFilter.class);
+
+    private final ImageRepository imageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean ready;
+
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder databaseLookups = new LongAdder();
+    private final LongAdder added = new LongAdder();
+
+    /**
+     * @param expectedNames     A szűrő méretezéséhez várt fájlnevek száma; ennél több név esetén nő a tévesen pozitív arány.
+     * @param falsePositiveRate A várt számú név mellett megengedett tévesen pozitív arány.
+     */
+    @Autowired
+    public FileNameFilter(ImageRepository imageRepository, TransactionTemplate transactionTemplate,
+                          @Value("${image.filename-filter.expected-names:1000000}") long expectedNames,
+                          @Value("${image.filename-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        if (expectedNames < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid file name filter size");
+        }
+        this.imageRepository = imageRepository;
+        this.transactionTemplate = transactionTemplate;
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedNames * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = Math.max(64, bits);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedNames * ln2));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    /**
+     * Induláskor beolvassa a tárolt fájlneveket. Közben érkező ellenőrzéseket az adatbázis válaszolja meg.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        long before = added.sum();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> names = imageRepository.streamAllFileNames()) {
+                names.forEach(this::add);
+            }
+        });
+        ready = true;
+        log.info("Loaded {} file names into the file name filter ({} bits, {} hashes) in {} ms",
+                added.sum() - before, bitCount, hashCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Felveszi a nevet a szűrőbe; a mentés előtt kell hívni.
+     *
+     * @param fileName A fájlnév.
+     */
+    public void add(String fileName) {
+        if (fileName == null) {
+            return;
+        }
+        long hash = hash(fileName);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = bits.get(index);
+            while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+                word = bits.get(index);
+            }
+        }
+        added.increment();
+    }
+
+    /**
+     * @param fileName A fájlnév.
+     * @return false, ha a név biztosan nem tartozik tárolt képhez; true, ha az adatbázisban kell ellenőrizni.
+     */
+    public boolean mightContain(String fileName) {
+        if (!ready || fileName == null) {
+            databaseLookups.increment();
+            return true;
+        }
+        long hash = hash(fileName);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                filtered.increment();
+                return false;
+            }
+        }
+        databaseLookups.increment();
+        return true;
+    }
+
+    /**
+     * @return A szűrő statisztikái.
+     */
+    public FilterStats stats() {
+        return new FilterStats(filtered.sum(), databaseLookups.sum(), added.sum());
+    }
+
+    /**
+     * A fájlnév 64 bites hash-e (FNV-1a, majd a MurmurHash3 keverőfüggvénye a bitek szétszórására);
+     * a két fele adja a kettős hash-elés két független értékét.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * A szűrő statisztikái.
+     *
+     * @param filtered        Az adatbázis nélkül (a szűrő alapján) megválaszolt ellenőrzések száma.
+     * @param databaseLookups Az adatbázisra bízott ellenőrzések száma.
+     * @param added           A szűrőbe felvett nevek száma.
+     */
+    public record FilterStats(long filtered, long databaseLookups, long added) {
+    }
+}
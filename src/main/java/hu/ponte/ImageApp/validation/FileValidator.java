@@ -7,11 +7,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A fájlok típusának, méreteinek és meglétének ellenőrzéséért felelős osztály.
@@ -29,15 +32,18 @@ public class FileValidator {
     private String[] allowedFileTypes;
 
     private final ImageRepository imageRepository;
+    private final FileNameFilter fileNameFilter;
 
     /**
      * Konstruktor a FileValidator osztályhoz.
      *
      * @param imageRepository a repository, amely segítségével ellenőrizzük, hogy létezik-e már a fájl
+     * @param fileNameFilter  a tárolt fájlnevek szűrője, amely a biztosan új neveknél megspórolja a lekérdezést
      */
     @Autowired
-    public FileValidator(ImageRepository imageRepository) {
+    public FileValidator(ImageRepository imageRepository, FileNameFilter fileNameFilter) {
         this.imageRepository = imageRepository;
+        this.fileNameFilter = fileNameFilter;
     }
 
     /**
@@ -47,35 +53,59 @@ public class FileValidator {
      * @throws IOException ha I/O hiba lép fel az ellenőrzés közben
      */
     public void validateFile(MultipartFile file) throws IOException {
-        validateFileType(file);
-        validateImageDimensions(file);
+        validateFileContent(file);
         validateFileAlreadyExists(file);
     }
 
     /**
-     * Ellenőrzi, hogy a fájl típusa PNG vagy JPG-e.
+     * Ellenőrzi a feltöltött fájl típusát és méreteit. Nem használja az adatbázist,
+     * így tetszőleges szálról hívható.
+     *
+     * @param file a feltöltött fájl
+     * @return a fájl tartalma alapján felismert képformátum
+     * @throws IOException ha I/O hiba lép fel az ellenőrzés közben
+     */
+    public ImageFormat validateFileContent(MultipartFile file) throws IOException {
+        ImageFormat format = validateFileType(file);
+        validateImageDimensions(file);
+        return format;
+    }
+
+    /**
+     * Ellenőrzi, hogy a fájl típusa PNG vagy JPG-e. A típust a fájl első bájtjai alapján
+     * határozza meg, nem a kliens által megadott Content-Type alapján.
      *
      * @param file a feltöltött fájl
+     * @return a felismert képformátum
      * @throws IllegalArgumentException ha a fájl típusa nem támogatott
+     * @throws IOException              ha hiba történik a fájl olvasása közben
      */
-    private void validateFileType(MultipartFile file) {
-        String contentType = file.getContentType();
-        if (!Arrays.asList(allowedFileTypes).contains(contentType)) {
+    private ImageFormat validateFileType(MultipartFile file) throws IOException {
+        ImageFormat format;
+        try (InputStream input = file.getInputStream()) {
+            format = ImageProbe.detectFormat(input);
+        }
+        if (format == null || !Arrays.asList(allowedFileTypes).contains(format.getMimeType())) {
             throw new IllegalArgumentException(ErrorMessages.INVALID_FILE_TYPE);
         }
+        return format;
     }
 
     /**
      * Ellenőrzi, hogy a kép méretei nem haladják meg a maximálisan megengedett szélességet és magasságot.
+     * A méreteket a kép fejlécéből olvassa ki, a pixeladatok dekódolása nélkül.
      *
      * @param file a feltöltött fájl
      * @throws IllegalArgumentException ha a kép méretei meghaladják a megengedett maximumot
      * @throws IOException              ha hiba történik a kép beolvasása közben
      */
     private void validateImageDimensions(MultipartFile file) throws IOException {
-        BufferedImage bufferedImage = ImageIO.read(file.getInputStream());
-        int imageWidth = bufferedImage.getWidth();
-        int imageHeight = bufferedImage.getHeight();
+        Dimension dimensions;
+        try (InputStream input = file.getInputStream()) {
+            dimensions = ImageProbe.readDimensions(input);
+        }
+        int imageWidth = dimensions.width;
+        int imageHeight = dimensions.height;
 
         if (imageWidth > maxWidth || imageHeight > maxHeight) {
             throw new IllegalArgumentException(String.format(ErrorMessages.IMAGE_SIZE_EXCEEDS_LIMIT, maxWidth, maxHeight));
@@ -83,13 +113,37 @@ public class FileValidator {
     }
 
     /**
-     * Ellenőrzi, hogy a fájl már létezik-e a repositoryban.
+     * Ellenőrzi, hogy a fájlok közül létezik-e már valamelyik a repositoryban, vagy ugyanaz a név
+     * többször szerepel-e a feltöltésben. Csak a fájlnév-szűrő szerint esetleg létező neveket kérdezi
+     * le, azokat is egyetlen lekérdezéssel; ha egy ilyen sincs, az adatbázishoz nem fordul.
+     *
+     * @param files a feltöltött fájlok
+     * @throws FileAlreadyExistsException az első (a feltöltés sorrendjében) már létező vagy ismétlődő fájlra
+     */
+    public void validateFilesAlreadyExist(MultipartFile[] files) throws FileAlreadyExistsException {
+        List<String> fileNames = Arrays.stream(files).map(MultipartFile::getOriginalFilename).toList();
+        List<String> candidates = fileNames.stream().filter(fileNameFilter::mightContain).toList();
+        Set<String> existing = candidates.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(imageRepository.findExistingFileNames(candidates));
+        Set<String> seen = new HashSet<>();
+        for (String fileName : fileNames) {
+            if (existing.contains(fileName) || !seen.add(fileName)) {
+                throw new FileAlreadyExistsException(ErrorMessages.FILE_ALREADY_EXISTS + fileName);
+            }
+        }
+    }
+
+    /**
+     * Ellenőrzi, hogy a fájl már létezik-e a repositoryban; a fájlnév-szűrő szerint biztosan új
+     * névnél nem kérdez le.
      *
      * @param file a feltöltött fájl
      * @throws FileAlreadyExistsException ha a fájl már létezik
      */
-    private void validateFileAlreadyExists(MultipartFile file) throws FileAlreadyExistsException {
-        if (imageRepository.existsByFileName(file.getOriginalFilename())) {
+    public void validateFileAlreadyExists(MultipartFile file) throws FileAlreadyExistsException {
+        String fileName = file.getOriginalFilename();
+        if (fileNameFilter.mightContain(fileName) && imageRepository.existsByFileName(fileName)) {
             throw new FileAlreadyExistsException(ErrorMessages.FILE_ALREADY_EXISTS + file.getOriginalFilename());
         }
     }
@@ -0,0 +1,71 @@
+package hu.ponte.ImageApp.validation;
+
+import java.util.Arrays;
+
+/**
+ * A támogatott képformátumok, a fájlok elején található azonosító bájtokkal (magic bytes).
+ */
+public enum ImageFormat {
+
+    PNG("image/png", "png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    JPEG("image/jpeg", "jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+
+    /**
+     * A formátum felismeréséhez szükséges bájtok maximális száma.
+     */
+    public static final int MAX_SIGNATURE_LENGTH = 8;
+
+    private final String mimeType;
+    private final String formatName;
+    private final byte[] signature;
+
+    ImageFormat(String mimeType, String formatName, byte[] signature) {
+        this.mimeType = mimeType;
+        this.formatName = formatName;
+        this.signature = signature;
+    }
+
+    /**
+     * @return A formátum MIME típusa (pl. "image/png").
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return A formátum neve, ahogy a képfeldolgozó eszközök ismerik (pl. "png").
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * @param mimeType Egy MIME típus.
+     * @return A MIME típushoz tartozó formátum, vagy null, ha nem támogatott.
+     */
+    public static ImageFormat fromMimeType(String mimeType) {
+        for (ImageFormat format : values()) {
+            if (format.mimeType.equals(mimeType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Felismeri a formátumot a fájl első bájtjai alapján.
+     *
+     * @param header A fájl első (legfeljebb {@value #MAX_SIGNATURE_LENGTH}) bájtja.
+     * @param length A ténylegesen beolvasott bájtok száma.
+     * @return A felismert formátum, vagy null, ha a tartalom egyik támogatott formátumnak sem felel meg.
+     */
+    public static ImageFormat detect(byte[] header, int length) {
+        for (ImageFormat format : values()) {
+            if (length >= format.signature.length
+                    && Arrays.equals(header, 0, format.signature.length, format.signature, 0, format.signature.length)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package hu.ponte.ImageApp.validation;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Képek formátumának és méreteinek meghatározása a pixeladatok dekódolása nélkül.
+ */
+public final class ImageProbe {
+
+    private ImageProbe() {
+    }
+
+    /**
+     * Felismeri a kép formátumát a stream első bájtjai alapján.
+     *
+     * @param input A kép tartalma; a metódus legfeljebb {@value ImageFormat#MAX_SIGNATURE_LENGTH} bájtot olvas belőle.
+     * @return A felismert formátum, vagy null, ha nem támogatott.
+     * @throws IOException Ha a stream nem olvasható.
+     */
+    public static ImageFormat detectFormat(InputStream input) throws IOException {
+        byte[] header = input.readNBytes(ImageFormat.MAX_SIGNATURE_LENGTH);
+        return ImageFormat.detect(header, header.length);
+    }
+
+    /**
+     * Kiolvassa a kép méreteit a fejlécből (PNG esetén az IHDR, JPEG esetén az SOF szegmensből)
+     * az ImageReader segítségével, a pixeladatok dekódolása nélkül.
+     *
+     * @param input A kép tartalma.
+     * @return A kép szélessége és magassága.
+     * @throws IOException Ha a formátum nem ismerhető fel, vagy a fejléc nem olvasható.
+     */
+    public static Dimension readDimensions(InputStream input) throws IOException {
+        try (ImageInputStream imageInput = new MemoryCacheImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -1,32 +1,106 @@
 package hu.ponte.ImageApp;
 
+import com.jayway.jsonpath.JsonPath;
+import hu.ponte.ImageApp.controller.GlobalExceptionHandler;
+import hu.ponte.ImageApp.crypto.ImageCipher;
+import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.repository.ImageRepository;
+import hu.ponte.ImageApp.repository.ResizeResultRepository;
+import hu.ponte.ImageApp.service.ContentBlobService;
+import hu.ponte.ImageApp.service.ZipExportService;
+import hu.ponte.ImageApp.service.ZipSelection;
+import hu.ponte.ImageApp.storage.BlobMigrationRunner;
+import hu.ponte.ImageApp.storage.BlobStore;
+import hu.ponte.ImageApp.util.AESUtil;
+import hu.ponte.ImageApp.util.ContentHash;
 import hu.ponte.ImageApp.util.ErrorMessages;
+import hu.ponte.ImageApp.validation.FileNameFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 @Transactional
 class ImageApplicationTests {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ZipExportService zipExportService;
+
+    @Autowired
+    private FileNameFilter fileNameFilter;
+
+    @Autowired
+    private ContentBlobService contentBlobService;
+
+    @Autowired
+    private ResizeResultRepository resizeResultRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageCipher imageCipher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Value("${image.max.width}")
     private int maxWidth;
 
@@ -103,6 +177,36 @@ class ImageApplicationTests {
                 .andExpect(content().contentType("application/zip"));
     }
 
+    @Test
+    public void testSelectiveZipExport() throws Exception {
+        byte[] imageBytes1 = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+        byte[] imageBytes2 = Files.readAllBytes(Paths.get("src/test/resources/test2.jpg"));
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "zip-selected.jpg", "image/jpeg", imageBytes1))
+                        .file(new MockMultipartFile("files", "zip-other.jpg", "image/jpeg", imageBytes2))
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+
+        // A szolgáltatást közvetlenül hívjuk, mert a streamelt válasz másik szálon, a teszt tranzakcióján kívül fut
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        zipExportService.writeImagesAsZip(new ZipSelection(List.of("zip-selected.jpg"), null, null, null, null), zip);
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            ZipEntry entry = zipIn.getNextEntry();
+            assertEquals("zip-selected.jpg", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            byte[] content = zipIn.readAllBytes();
+            assertEquals(imageRepository.findByFileName("zip-selected.jpg").getFileSize().longValue(), content.length);
+            assertEquals(null, zipIn.getNextEntry());
+        }
+
+        // Fordított azonosító tartomány
+        mockMvc.perform(get("/api/files/zip").param("fromId", "10").param("toId", "1"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testFileSizeExceedsLimit() throws Exception {
         // Nagy képfájl létrehozása
@@ -145,4 +249,289 @@ class ImageApplicationTests {
                 .andExpect(status().isConflict())
                 .andExpect(content().string(ErrorMessages.FILE_ALREADY_EXISTS + "duplicate.jpg"));
     }
+
+    @Test
+    public void testDuplicateFileNameInOneUpload() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        // A szűrő szerint még biztosan nem létező név
+        assertFalse(fileNameFilter.mightContain("same-name.jpg"));
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "same-name.jpg", "image/jpeg", imageBytes))
+                        .file(new MockMultipartFile("files", "same-name.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(ErrorMessages.FILE_ALREADY_EXISTS + "same-name.jpg"));
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "same-name.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+        assertTrue(fileNameFilter.mightContain("same-name.jpg"));
+    }
+
+    @Test
+    public void testOnlyFileNameConflictsMapToConflict() {
+        GlobalExceptionHandler handler = new GlobalExceptionHandler();
+        DataIntegrityViolationException fileNameConflict = new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException(), ImageEntity.FILE_NAME_CONSTRAINT));
+        DataIntegrityViolationException otherViolation = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", new SQLException(), "images_content_key_nn"));
+
+        assertEquals(HttpStatus.CONFLICT, handler.handleDataIntegrityViolation(fileNameConflict).getStatusCode());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, handler.handleDataIntegrityViolation(otherViolation).getStatusCode());
+    }
+
+    @Test
+    public void testAsyncUploadJob() throws Exception {
+        // Hibás fájl, hogy a tesztek tranzakcióján kívül futó feladat ne mentsen semmit
+        MockMultipartFile file = new MockMultipartFile("files", "async.txt", "text/plain", "nem kép".getBytes());
+
+        MvcResult result = mockMvc.perform(multipart("/api/files")
+                        .file(file)
+                        .param("width", "200")
+                        .param("height", "200")
+                        .param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.files[0].fileName").value("async.txt"))
+                .andReturn();
+        String location = result.getResponse().getHeader("Location");
+
+        String state = null;
+        for (int attempt = 0; attempt < 100 && !"FAILED".equals(state); attempt++) {
+            Thread.sleep(50);
+            state = JsonPath.read(mockMvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(), "$.state");
+        }
+        mockMvc.perform(get(location))
+                .andExpect(jsonPath("$.state").value("FAILED"))
+                .andExpect(jsonPath("$.error").value(ErrorMessages.INVALID_FILE_TYPE))
+                .andExpect(jsonPath("$.files[0].stage").value("FAILED"));
+
+        mockMvc.perform(get("/api/jobs/ismeretlen"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testDuplicateContentIsStoredOnce() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        for (String fileName : new String[]{"first-copy.jpg", "second-copy.jpg"}) {
+            mockMvc.perform(multipart("/api/files")
+                            .file(new MockMultipartFile("files", fileName, "image/jpeg", imageBytes))
+                            .param("width", "200")
+                            .param("height", "200"))
+                    .andExpect(status().isOk());
+        }
+
+        // A két kép ugyanarra a tárolt tartalomra hivatkozik
+        assertEquals(imageRepository.findByFileName("first-copy.jpg").getContentKey(),
+                imageRepository.findByFileName("second-copy.jpg").getContentKey());
+        mockMvc.perform(get("/api/files/second-copy.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLegacyImagesAreMigratedToImageCipherContent() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+        for (String fileName : new String[]{"legacy-first.jpg", "legacy-second.jpg"}) {
+            ImageEntity legacy = new ImageEntity();
+            legacy.setFileName(fileName);
+            legacy.setUploadedAt(Instant.now());
+            legacy.setEncryptedData(AESUtil.encrypt(imageBytes));
+            imageRepository.save(legacy);
+        }
+        entityManager.flush();
+
+        new BlobMigrationRunner(imageRepository, contentBlobService, blobStore, imageCipher, transactionTemplate,
+                jdbcTemplate, entityManagerFactory).run(null);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Az azonos tartalmú régi képek egy közös, ImageCipher-rel titkosított tartalomra hivatkoznak
+        ImageEntity first = imageRepository.findByFileName("legacy-first.jpg");
+        ImageEntity second = imageRepository.findByFileName("legacy-second.jpg");
+        assertNull(first.getEncryptedData());
+        assertEquals(first.getContentKey(), second.getContentKey());
+        assertEquals(ContentHash.sha256Hex(imageBytes), first.getContentHash());
+        assertEquals(imageBytes.length, first.getFileSize());
+        assertEquals(ContentHash.crc32(imageBytes), first.getCrc32());
+        assertEquals("image/jpeg", first.getContentType());
+        try (InputStream stored = blobStore.openInput(first.getContentKey())) {
+            assertArrayEquals("PNTE".getBytes(StandardCharsets.US_ASCII), stored.readNBytes(4));
+        }
+        try (InputStream decrypted = imageCipher.decryptingStream(blobStore.openInput(first.getContentKey()))) {
+            assertArrayEquals(imageBytes, decrypted.readAllBytes());
+        }
+        mockMvc.perform(get("/api/files/legacy-second.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + first.getContentHash() + "\""));
+    }
+
+    @Test
+    public void testRetriedResizeRecordSkipsRecordedResults() {
+        Map<String, String> resizes = Map.of("source-hash", "content-hash");
+        contentBlobService.recordResizes(resizes, 10, 10, "test", false);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Az ütközés utáni ismétlés nem próbálja újra beszúrni a már rögzített eredményt
+        contentBlobService.recordResizes(resizes, 10, 10, "test", true);
+        entityManager.flush();
+
+        assertEquals(1, resizeResultRepository.findKnown(resizes.keySet(), 10, 10, "test").size());
+    }
+
+    @Test
+    public void testEncodingOptions() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "default-encoding.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "low-quality.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200")
+                        .param("quality", "30")
+                        .param("progressive", "true"))
+                .andExpect(status().isOk());
+
+        // Más kódolással ugyanaz a kép külön átméretezésre kerül, és kisebb lesz
+        ImageEntity defaultEncoding = imageRepository.findByFileName("default-encoding.jpg");
+        ImageEntity lowQuality = imageRepository.findByFileName("low-quality.jpg");
+        assertNotEquals(defaultEncoding.getContentKey(), lowQuality.getContentKey());
+        assertTrue(lowQuality.getFileSize() < defaultEncoding.getFileSize());
+        assertEquals(imageBytes.length, lowQuality.getOriginalSize().longValue());
+
+        // Érvénytelen minőség és a processzor által nem támogatott formátum
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "invalid-quality.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200")
+                        .param("quality", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "unsupported.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200")
+                        .param("format", "nosuchformat"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testPipelineMetricsAreExported() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(new MockMultipartFile("files", "metered.jpg", "image/jpeg", imageBytes))
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("image_pipeline_stage_seconds_count{stage=\"resize\"")))
+                .andExpect(content().string(containsString("image_process_seconds_count")))
+                .andExpect(content().string(containsString("image_upload_bytes_in_bytes_total")))
+                .andExpect(content().string(containsString("image_cache_size_bytes")));
+    }
+
+    @Test
+    public void testListFiles() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        MockMultipartFile file = new MockMultipartFile("files", "listed.jpg", "image/jpeg", imageBytes);
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(file)
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+
+        // A lista csak metaadatokat tartalmaz
+        mockMvc.perform(get("/api/files").param("size", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[?(@.fileName == 'listed.jpg')].contentType").value("image/jpeg"))
+                .andExpect(jsonPath("$.items[?(@.fileName == 'listed.jpg')].width").value(200));
+
+        // Érvénytelen oldalméret
+        mockMvc.perform(get("/api/files").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testConditionalAndRangeDownload() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        MockMultipartFile file = new MockMultipartFile("files", "conditional.jpg", "image/jpeg", imageBytes);
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(file)
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+
+        // Az első letöltés ETag-et ad vissza
+        String eTag = mockMvc.perform(get("/api/files/conditional.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().exists("Cache-Control"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Változatlan kép esetén 304
+        mockMvc.perform(get("/api/files/conditional.jpg").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        // Tartomány lekérése
+        mockMvc.perform(get("/api/files/conditional.jpg").header("Range", "bytes=0-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Length", "10"));
+    }
+
+    @Test
+    public void testDownloadVariant() throws Exception {
+        byte[] imageBytes = Files.readAllBytes(Paths.get("src/test/resources/test.jpg"));
+
+        MockMultipartFile file = new MockMultipartFile("files", "variant.jpg", "image/jpeg", imageBytes);
+
+        mockMvc.perform(multipart("/api/files")
+                        .file(file)
+                        .param("width", "200")
+                        .param("height", "200"))
+                .andExpect(status().isOk());
+
+        // A változat az első kéréskor készül el
+        byte[] variantBytes = mockMvc.perform(get("/api/files/variant.jpg").param("w", "50").param("h", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andReturn().getResponse().getContentAsByteArray();
+        BufferedImage variant = ImageIO.read(new ByteArrayInputStream(variantBytes));
+        assertTrue(variant.getWidth() <= 50 && variant.getHeight() <= 50);
+
+        // Csak az egyik méret megadása hibás kérés
+        mockMvc.perform(get("/api/files/variant.jpg").param("w", "50"))
+                .andExpect(status().isBadRequest());
+
+        // A tárolt képnél nagyobb változat nem készül (nincs nagyítás)
+        mockMvc.perform(get("/api/files/variant.jpg").param("w", "4000").param("h", "4000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("nem lehet nagyobb a képnél")));
+
+        // Az egyik irányban nagyobb keret megengedett, ha a kép a másik miatt kicsinyítve fér bele
+        byte[] boxedBytes = mockMvc.perform(get("/api/files/variant.jpg").param("w", "4000").param("h", "50"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        BufferedImage boxed = ImageIO.read(new ByteArrayInputStream(boxedBytes));
+        assertTrue(boxed.getHeight() <= 50);
+    }
 }
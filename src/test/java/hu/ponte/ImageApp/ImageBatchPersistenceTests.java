@@ -0,0 +1,121 @@
+package hu.ponte.ImageApp;
+
+import hu.ponte.ImageApp.entity.ContentBlobEntity;
+import hu.ponte.ImageApp.entity.ImageEntity;
+import hu.ponte.ImageApp.entity.ResizeResultEntity;
+import hu.ponte.ImageApp.repository.ImageRepository;
+import hu.ponte.ImageApp.service.ContentBlobService;
+import hu.ponte.ImageApp.service.ImageService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ImageBatchPersistenceTests {
+
+    private static final int FILE_COUNT = 10;
+
+    /**
+     * A tartalmak nyilvántartásának (user-015) utasításai, amelyek szintén nem függnek a fájlok számától.
+     */
+    private static final int CONTENT_STATEMENTS = 5;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ContentBlobService contentBlobService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<String> uploadedNames = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        for (String fileName : uploadedNames) {
+            ImageEntity image = imageRepository.findByFileName(fileName);
+            if (image != null) {
+                imageRepository.delete(image);
+                contentBlobService.release(image.getContentHash());
+            }
+        }
+    }
+
+    @Test
+    public void testMultiFileUploadIsPersistedInBatches() throws Exception {
+        String prefix = UUID.randomUUID().toString();
+        MultipartFile[] files = new MultipartFile[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String fileName = prefix + "-" + i + ".jpg";
+            uploadedNames.add(fileName);
+            files[i] = new MockMultipartFile("files", fileName, "image/jpeg", distinctImage(i));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        imageService.handleImageUpload(files, 200, 200);
+
+        // Minden kép új tartalom: képenként egy kép, egy tartalom és egy átméretezési eredmény
+        assertEquals(FILE_COUNT, insertCount(statistics, ImageEntity.class));
+        assertEquals(FILE_COUNT, insertCount(statistics, ContentBlobEntity.class));
+        assertEquals(FILE_COUNT, insertCount(statistics, ResizeResultEntity.class));
+
+        // A képek mentése legfeljebb 3 utasítás: a létező nevek lekérdezése (új neveknél a névszűrő
+        // kihagyja), a szekvencia lekérdezése (az első használatkor kétszer) és egy kötegelt beszúrás.
+        // A tartalmak nyilvántartása: az ismert átméretezések és tartalmak lekérdezése, a tartalmak
+        // zárolása, valamint a tartalmak és az átméretezések egy-egy kötegelt beszúrása.
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 3 + CONTENT_STATEMENTS,
+                "Expected at most " + (3 + CONTENT_STATEMENTS) + " statements, got " + statements);
+
+        Set<String> contentKeys = new HashSet<>();
+        for (String fileName : uploadedNames) {
+            contentKeys.add(imageRepository.findByFileName(fileName).getContentKey());
+        }
+        assertEquals(FILE_COUNT, contentKeys.size());
+    }
+
+    private static long insertCount(Statistics statistics, Class<?> entityClass) {
+        return statistics.getEntityStatistics(entityClass.getName()).getInsertCount();
+    }
+
+    /**
+     * Egy egyszínű, a sorszámtól függő színű JPEG kép, hogy az átméretezett tartalmak is különbözzenek.
+     */
+    private static byte[] distinctImage(int index) throws IOException {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(index * 25, 255 - index * 25, 128));
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+}
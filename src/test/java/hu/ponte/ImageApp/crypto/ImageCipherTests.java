@@ -0,0 +1,105 @@
+package hu.ponte.ImageApp.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A darabolt AES-GCM formátum tesztjei.
+ */
+class ImageCipherTests {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ImageCipher imageCipher = new ImageCipher(new SecretKeySpec(new byte[16], "AES"), CHUNK_SIZE);
+
+    @Test
+    void testStreamsUseSaltedSubkeys() throws IOException {
+        byte[] data = randomBytes(3 * CHUNK_SIZE + 17);
+
+        byte[] first = encrypt(data);
+        byte[] second = encrypt(data);
+
+        assertEquals(ImageCipher.VERSION, first[ImageCipher.MAGIC.length]);
+        assertFalse(Arrays.equals(first, 0, ImageCipher.HEADER_LENGTH, second, 0, ImageCipher.HEADER_LENGTH));
+        // Azonos tartalom és azonos sorszámú nonce-ok mellett is eltérő kulcs, így eltérő titkosított darab
+        assertFalse(Arrays.equals(first, ImageCipher.HEADER_LENGTH, first.length,
+                second, ImageCipher.HEADER_LENGTH, second.length));
+        assertArrayEquals(data, decrypt(first));
+        assertArrayEquals(data, decrypt(second));
+        assertArrayEquals(data, imageCipher.decrypt(first));
+    }
+
+    @Test
+    void testLegacyDataWithHeaderLikePrefixDecrypts() throws Exception {
+        // Régi (AES/ECB) adat, amelynek első titkosított blokkja véletlenül érvényes fejlécnek látszik
+        byte[] firstBlock = new byte[16];
+        System.arraycopy(ImageCipher.MAGIC, 0, firstBlock, 0, ImageCipher.MAGIC.length);
+        firstBlock[ImageCipher.MAGIC.length] = ImageCipher.VERSION;
+        firstBlock[ImageCipher.PREFIX_LENGTH + 2] = (byte) (CHUNK_SIZE >>> 8);
+        Cipher block = Cipher.getInstance("AES/ECB/NoPadding");
+        block.init(Cipher.DECRYPT_MODE, new SecretKeySpec(new byte[16], "AES"));
+        byte[] data = new byte[3 * CHUNK_SIZE];
+        System.arraycopy(block.doFinal(firstBlock), 0, data, 0, 16);
+        System.arraycopy(randomBytes(data.length - 16), 0, data, 16, data.length - 16);
+        Cipher legacy = Cipher.getInstance("AES");
+        legacy.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[16], "AES"));
+        byte[] encrypted = legacy.doFinal(data);
+        assertArrayEquals(firstBlock, Arrays.copyOf(encrypted, 16));
+
+        assertArrayEquals(data, imageCipher.decrypt(encrypted));
+        assertArrayEquals(data, decrypt(encrypted));
+    }
+
+    @Test
+    void testOversizedChunkSizeIsRejected() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(10));
+        encrypted[ImageCipher.PREFIX_LENGTH] = (byte) 0x7F;
+        encrypted[ImageCipher.PREFIX_LENGTH + 1] = (byte) 0xFF;
+        encrypted[ImageCipher.PREFIX_LENGTH + 2] = (byte) 0xFF;
+        encrypted[ImageCipher.PREFIX_LENGTH + 3] = (byte) 0xFF;
+
+        // Érvénytelen darabméretű fejléc nem fejléc: a felismerés régi formátumként próbálja, ami sikertelen
+        assertThrows(IOException.class, () -> decrypt(encrypted));
+        assertThrows(IOException.class, () -> imageCipher.decrypt(encrypted));
+        IOException e = assertThrows(IOException.class,
+                () -> new GcmChunkedInputStream(new ByteArrayInputStream(encrypted), imageCipher));
+        assertTrue(e.getMessage().contains("Invalid chunk size"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ImageCipher(new SecretKeySpec(new byte[16], "AES"), ImageCipher.MAX_CHUNK_SIZE + 1));
+    }
+
+    private byte[] encrypt(byte[] data) throws IOException {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream output = imageCipher.encryptingStream(encrypted)) {
+            output.write(data);
+        }
+        return encrypted.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] data) throws IOException {
+        try (InputStream input = imageCipher.decryptingStream(new ByteArrayInputStream(data))) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
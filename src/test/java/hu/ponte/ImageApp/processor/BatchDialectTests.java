@@ -0,0 +1,32 @@
+package hu.ponte.ImageApp.processor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A készletben futó feladatok parancssorai.
+ */
+class BatchDialectTests {
+
+    private static final ProcessLimits LIMITS = new ProcessLimits("256MB", 1);
+
+    @Test
+    void testResizeCommandsCarryProcessLimits() {
+        String graphicsMagick = BatchDialect.GRAPHICSMAGICK.resizeCommand("/tmp/in.jpg", 200, 100, "/tmp/out.jpg",
+                EncodingOptions.DEFAULTS, LIMITS);
+        assertTrue(graphicsMagick.startsWith("convert \"-limit\" \"memory\" \"256MB\" \"-limit\" \"threads\" \"1\" "),
+                graphicsMagick);
+
+        String imageMagick = BatchDialect.IMAGEMAGICK.resizeCommand("/tmp/in.jpg", 200, 100, "/tmp/out.jpg",
+                EncodingOptions.DEFAULTS, LIMITS);
+        assertTrue(imageMagick.startsWith("magick '-limit' 'memory' '256MB' '-limit' 'thread' '1' "), imageMagick);
+    }
+
+    @Test
+    void testResizeCommandsWithoutLimits() {
+        String imageMagick = BatchDialect.IMAGEMAGICK.resizeCommand("/tmp/in.jpg", 200, 100, "/tmp/out.jpg",
+                EncodingOptions.DEFAULTS, ProcessLimits.NONE);
+        assertTrue(imageMagick.startsWith("magick -define "), imageMagick);
+    }
+}
@@ -0,0 +1,71 @@
+package hu.ponte.ImageApp.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A hosszan futó worker folyamat kezelése, az ImageMagick dialektus shelljével (magick nélkül is futtatható).
+ */
+class BatchWorkerTests {
+
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    @Test
+    void testFailedJobReportsErrorOutput() throws Exception {
+        try (BatchWorker worker = new BatchWorker(BatchDialect.IMAGEMAGICK)) {
+            assertEquals(0, worker.execute(BatchDialect.IMAGEMAGICK.pingCommand(), TIMEOUT_MILLIS));
+
+            int exitCode = worker.execute("echo 'corrupt image' >&2; echo \"__IMAGEAPP_DONE__1\"", TIMEOUT_MILLIS);
+
+            assertEquals(1, exitCode);
+            // A hibakimenetet egy külön szál olvassa, ezért rövid ideig várunk rá
+            long deadline = System.nanoTime() + 1_000_000_000L;
+            while (worker.errorOutput().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("corrupt image", worker.errorOutput());
+            assertTrue(worker.isAlive());
+        }
+    }
+
+    @Test
+    void testDeadWorkerIsReportedOnEveryJob() throws Exception {
+        try (BatchWorker worker = new BatchWorker(BatchDialect.IMAGEMAGICK)) {
+            ProcessUnavailableException died = assertThrows(ProcessUnavailableException.class,
+                    () -> worker.execute("echo 'out of memory' >&2; exit 3", TIMEOUT_MILLIS));
+            assertTrue(died.getMessage().contains("terminated unexpectedly"));
+
+            // A leállás a további feladatoknál sem veszhet el
+            assertThrows(ProcessUnavailableException.class,
+                    () -> worker.execute(BatchDialect.IMAGEMAGICK.pingCommand(), TIMEOUT_MILLIS));
+            assertFalse(worker.isAlive());
+        }
+    }
+
+    @Test
+    void testTimedOutJobChildIsKilledOnClose() throws Exception {
+        BatchWorker worker = new BatchWorker(BatchDialect.IMAGEMAGICK);
+        try {
+            assertThrows(ProcessUnavailableException.class,
+                    () -> worker.execute("sleep 30; echo \"__IMAGEAPP_DONE__0\"", 500));
+        } finally {
+            List<ProcessHandle> children = ProcessHandle.current().descendants()
+                    .filter(process -> process.info().command().map(command -> command.endsWith("sleep")).orElse(false))
+                    .toList();
+            assertFalse(children.isEmpty());
+            worker.close();
+            // A shell által indított folyamat sem maradhat árván futva
+            for (ProcessHandle child : children) {
+                child.onExit().get(5, TimeUnit.SECONDS);
+                assertFalse(child.isAlive());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package hu.ponte.ImageApp.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A csökkentett méretű dekódolás számításai és a JavaImageProcessor olvasási paraméterei.
+ */
+class DecodeSizeHintTests {
+
+    @Test
+    void testGeometryIsTwiceTheTarget() {
+        assertEquals("400x300", DecodeSizeHint.geometry(200, 150));
+    }
+
+    @Test
+    void testSubsampling() {
+        // 4000x3000 -> 200x200: a lépték 0,05, a kétszeres tartalékkal minden 10. képpont elég
+        assertEquals(10, DecodeSizeHint.subsampling(4000, 3000, 200, 200));
+        // A nem egész lépésköz lefelé kerekedik, hogy a beolvasott kép ne legyen kisebb a célméret kétszeresénél
+        assertEquals(3, DecodeSizeHint.subsampling(1400, 1400, 200, 200));
+        // Ha a cél nincs a forrás felénél kisebb, nincs mintavételezés
+        assertEquals(1, DecodeSizeHint.subsampling(300, 300, 200, 200));
+        assertEquals(1, DecodeSizeHint.subsampling(100, 100, 200, 200));
+        // Az oldalarány miatt a szorosabb méret dönt
+        assertEquals(2, DecodeSizeHint.subsampling(4000, 1000, 1000, 200));
+    }
+
+    @Test
+    void testOnlyJpegInputIsSubsampled() throws IOException {
+        assertEquals(10, readSubsampling("jpeg"));
+        assertEquals(1, readSubsampling("png"));
+    }
+
+    private static int readSubsampling(String format) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_RGB), format, encoded);
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded.toByteArray()))) {
+            ImageReader reader = ImageIO.getImageReaders(input).next();
+            try {
+                reader.setInput(input, true, true);
+                return JavaImageProcessor.readParam(reader, 100, 100).getSourceXSubsampling();
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
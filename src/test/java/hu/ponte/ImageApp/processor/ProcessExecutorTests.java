@@ -0,0 +1,94 @@
+package hu.ponte.ImageApp.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * A külső folyamatok futtatójának korlátai: hibakimenet, időtúllépés és telítettség.
+ */
+class ProcessExecutorTests {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    @Test
+    void testErrorOutputInMessage() throws Exception {
+        ProcessExecutor executor = new ProcessExecutor(1, 0, 0, TIMEOUT_MILLIS);
+        try {
+            ExternalProcessException failure = assertThrows(ExternalProcessException.class,
+                    () -> executor.run("sh", List.of("sh", "-c", "echo broken input >&2; exit 3")));
+            assertEquals(3, failure.getExitCode());
+            assertTrue(failure.getMessage().contains("broken input"));
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    void testTimedOutProcessTreeIsKilled() throws Exception {
+        ProcessExecutor executor = new ProcessExecutor(1, 0, 0, TIMEOUT_MILLIS);
+        try {
+            long start = System.nanoTime();
+            ExternalProcessException timeout = assertThrows(ExternalProcessException.class,
+                    () -> executor.run("sh", List.of("sh", "-c", "sleep 30 & wait")));
+            assertTrue(timeout.isTimedOut());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    void testOrphanedChildDoesNotBlockCaller() throws Exception {
+        ProcessExecutor executor = new ProcessExecutor(1, 0, 0, TIMEOUT_MILLIS);
+        try {
+            // A háttérben futó gyermek a szülő kilépése után is örökli a hibakimenetet; a hívó ettől
+            // legfeljebb a futásidő-korlátig várhat
+            long start = System.nanoTime();
+            try {
+                executor.run("sh", List.of("sh", "-c", "sleep 5 >/dev/null & exit 0"));
+            } catch (ExternalProcessException e) {
+                assertTrue(e.isTimedOut());
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS + 1000));
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    void testSaturatedExecutorRejectsImmediately() throws Exception {
+        ProcessExecutor executor = new ProcessExecutor(1, 0, 0, TIMEOUT_MILLIS);
+        // A foglaló folyamatot a futásidő-korlát állítja le, így a szál akkor is véget ér, ha a teszt elbukik
+        Thread busy = new Thread(() -> {
+            try {
+                executor.run("sh", List.of("sh", "-c", "sleep 30"));
+            } catch (Exception ignored) {
+                // A teszt csak a hely foglaltságát használja ki
+            }
+        });
+        try {
+            busy.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!executor.isSaturated()) {
+                if (System.nanoTime() > deadline) {
+                    fail("Process executor did not become saturated");
+                }
+                Thread.sleep(1);
+            }
+            // Foglalt hely és várakozási sor nélkül a kérés azonnal visszautasításra kerül
+            assertThrows(ProcessSaturatedException.class, () -> executor.run("sh", List.of("true")));
+            busy.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(busy.isAlive());
+        } finally {
+            executor.close();
+        }
+    }
+}
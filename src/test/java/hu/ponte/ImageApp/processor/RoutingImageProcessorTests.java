@@ -0,0 +1,199 @@
+package hu.ponte.ImageApp.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A RoutingImageProcessor választási és átirányítási szabályai, kitalált feldolgozókkal.
+ */
+class RoutingImageProcessorTests {
+
+    private static final long COOLDOWN_MILLIS = 60_000;
+
+    @Test
+    void testFastestBackendIsPicked() throws Exception {
+        FakeProcessor slow = new FakeProcessor("slow", 20);
+        FakeProcessor fast = new FakeProcessor("fast", 0);
+        RoutingImageProcessor router = router(slow, fast);
+
+        // Az első két kérés mindkét feldolgozót megméri
+        resize(router);
+        resize(router);
+        slow.calls = 0;
+        fast.calls = 0;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fast", resize(router));
+        }
+        assertEquals(0, slow.calls);
+        assertEquals(5, fast.calls);
+    }
+
+    @Test
+    void testBackendFailureStartsCooldown() throws Exception {
+        FakeProcessor failing = new FakeProcessor("failing", 0);
+        FakeProcessor healthy = new FakeProcessor("healthy", 0);
+        failing.failures.add(new ProcessUnavailableException("gm could not be started"));
+        RoutingImageProcessor router = router(failing, healthy);
+
+        assertEquals("healthy", resize(router));
+        assertEquals("healthy", resize(router));
+
+        // A hibás feldolgozót a kerülés ideje alatt nem próbálja újra, amíg van másik
+        assertEquals(1, failing.calls);
+        assertEquals(2, healthy.calls);
+    }
+
+    @Test
+    void testTimeoutStartsCooldown() throws Exception {
+        FakeProcessor hanging = new FakeProcessor("hanging", 0);
+        FakeProcessor healthy = new FakeProcessor("healthy", 0);
+        hanging.failures.add(ExternalProcessException.timedOut("gm", 1000, null));
+        RoutingImageProcessor router = router(hanging, healthy);
+
+        resize(router);
+        resize(router);
+
+        assertEquals(1, hanging.calls);
+    }
+
+    @Test
+    void testSaturationDoesNotStartCooldown() throws Exception {
+        FakeProcessor saturated = new FakeProcessor("saturated", 0);
+        FakeProcessor other = new FakeProcessor("other", 0);
+        saturated.failures.add(new ProcessSaturatedException("gm", 1));
+        RoutingImageProcessor router = router(saturated, other);
+
+        assertEquals("other", resize(router));
+        // A telített feldolgozó még nem mért, ezért a következő kérés ismét vele kezd
+        assertEquals("saturated", resize(router));
+    }
+
+    @Test
+    void testCoolingDownBackendIsLastResort() throws Exception {
+        FakeProcessor first = new FakeProcessor("first", 0);
+        FakeProcessor second = new FakeProcessor("second", 0);
+        first.failures.add(new ProcessUnavailableException("first died"));
+        second.failures.add(new ProcessUnavailableException("second died"));
+        second.failures.add(new ProcessUnavailableException("second died again"));
+        RoutingImageProcessor router = router(first, second);
+
+        assertThrows(ProcessUnavailableException.class, () -> resize(router));
+
+        // Mindkettő kerülendő, de a kérést végső esetben mégis megkapják
+        assertEquals("first", resize(router));
+    }
+
+    @Test
+    void testInputErrorIsNotRetried() {
+        FakeProcessor first = new FakeProcessor("first", 0);
+        FakeProcessor second = new FakeProcessor("second", 0);
+        IIOException corrupt = new IIOException("Unsupported Image Type");
+        first.failures.add(corrupt);
+        first.failures.add(new ExternalProcessException("gm", 1, "corrupt image"));
+        RoutingImageProcessor router = router(first, second);
+
+        assertSame(corrupt, assertThrows(IIOException.class, () -> resize(router)));
+        assertThrows(ExternalProcessException.class, () -> resize(router));
+
+        // A bemenet hibája nem a feldolgozóé: nincs átirányítás, és nem kerül kerülendő állapotba
+        assertEquals(2, first.calls);
+        assertEquals(0, second.calls);
+    }
+
+    @Test
+    void testCloseClosesEveryBackend() {
+        FakeProcessor first = new FakeProcessor("first", 0);
+        FakeProcessor second = new FakeProcessor("second", 0);
+        FakeProcessor third = new FakeProcessor("third", 0);
+        first.closeFailure = new IOException("first could not be closed");
+        second.closeFailure = new IOException("second could not be closed");
+        RoutingImageProcessor router = router(first, second, third);
+
+        IOException e = assertThrows(IOException.class, router::close);
+
+        // Az első hiba után is lezárja a többit, a későbbi hibák az elsőhöz csatolva
+        assertSame(first.closeFailure, e);
+        assertSame(second.closeFailure, e.getSuppressed()[0]);
+        assertTrue(first.closed && second.closed && third.closed);
+    }
+
+    private static RoutingImageProcessor router(FakeProcessor... processors) {
+        List<RoutingImageProcessor.Backend> backends = new ArrayList<>();
+        for (FakeProcessor processor : processors) {
+            backends.add(new RoutingImageProcessor.Backend(processor.name, processor));
+        }
+        return new RoutingImageProcessor(backends, 1024, COOLDOWN_MILLIS, 0);
+    }
+
+    private static String resize(RoutingImageProcessor router) throws IOException, InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        router.resizeImage(new ByteArrayInputStream(new byte[]{1, 2, 3}), output, 10, 10, "png", EncodingOptions.DEFAULTS);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Egy kitalált feldolgozó, amely a nevét írja a kimenetre, adott késleltetéssel, és a
+     * sorba állított hibákat sorban dobja.
+     */
+    private static final class FakeProcessor implements ImageProcessor, Closeable {
+
+        private final String name;
+        private final long delayMillis;
+        private final Deque<Exception> failures = new ArrayDeque<>();
+        private int calls;
+        private IOException closeFailure;
+        private boolean closed;
+
+        FakeProcessor(String name, long delayMillis) {
+            this.name = name;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public File resizeImage(File inputFile, int width, int height, String outputFilePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void resizeImage(InputStream input, OutputStream output, int width, int height, String format,
+                                EncodingOptions options) throws IOException, InterruptedException {
+            calls++;
+            Exception failure = failures.poll();
+            if (failure instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            Thread.sleep(delayMillis);
+            output.write(name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (closeFailure != null) {
+                throw closeFailure;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hu.ponte.ImageApp.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A helyi könyvtárban tároló BlobStore írásának tesztjei.
+ */
+class LocalDirectoryBlobStoreTests {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testWriteCommitsAfterWriterCloses() throws IOException {
+        LocalDirectoryBlobStore blobStore = new LocalDirectoryBlobStore(root, Long.MAX_VALUE);
+        String key = blobStore.newKey();
+        byte[] data = {1, 2, 3, 4};
+
+        // A rá épülő stream lezárása nem véglegesít, csak a sikeres visszatérés
+        blobStore.write(key, output -> {
+            try (OutputStream wrapper = output) {
+                wrapper.write(data);
+            }
+        });
+
+        try (InputStream input = blobStore.openInput(key)) {
+            assertArrayEquals(data, input.readAllBytes());
+        }
+        assertEquals(1, fileCount());
+    }
+
+    @Test
+    void testFailedWriteLeavesNoBlob() throws IOException {
+        LocalDirectoryBlobStore blobStore = new LocalDirectoryBlobStore(root, Long.MAX_VALUE);
+        String key = blobStore.newKey();
+
+        assertThrows(IOException.class, () -> blobStore.write(key, output -> {
+            output.write(new byte[]{1, 2, 3});
+            output.close();
+            throw new IOException("write failed");
+        }));
+
+        assertThrows(IOException.class, () -> blobStore.size(key));
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    void testAbortDiscardsContent() throws IOException {
+        LocalDirectoryBlobStore blobStore = new LocalDirectoryBlobStore(root, Long.MAX_VALUE);
+        String key = blobStore.newKey();
+
+        BlobOutputStream output = blobStore.openOutput(key);
+        output.write(new byte[]{1, 2, 3});
+        output.abort();
+        output.close();
+
+        assertThrows(IOException.class, () -> blobStore.size(key));
+        assertEquals(0, fileCount());
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}